@@ -0,0 +1,22 @@
+package sg.edu.nus.comp.cs4218;
+
+/**
+ * Supplies an application to the shell under a command name. Providers listed
+ * in <code>META-INF/services/sg.edu.nus.comp.cs4218.ApplicationProvider</code>
+ * on the class path are registered automatically when the shell starts.
+ */
+public interface ApplicationProvider {
+
+	/**
+	 * Returns the command name the application is invoked by.
+	 */
+	public String getName();
+
+	/**
+	 * Returns the application to run for one invocation of the command. A
+	 * provider of a stateless application may return the same instance every
+	 * time.
+	 */
+	public Application getApplication();
+
+}
@@ -0,0 +1,131 @@
+package sg.edu.nus.comp.cs4218.impl;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+import sg.edu.nus.comp.cs4218.Application;
+import sg.edu.nus.comp.cs4218.ApplicationProvider;
+import sg.edu.nus.comp.cs4218.impl.app.BcApplication;
+import sg.edu.nus.comp.cs4218.impl.app.CalApplication;
+import sg.edu.nus.comp.cs4218.impl.app.CatApplication;
+import sg.edu.nus.comp.cs4218.impl.app.CommApplication;
+import sg.edu.nus.comp.cs4218.impl.app.DateApplication;
+import sg.edu.nus.comp.cs4218.impl.app.EchoApplication;
+import sg.edu.nus.comp.cs4218.impl.app.FmtApplication;
+import sg.edu.nus.comp.cs4218.impl.app.HeadApplication;
+import sg.edu.nus.comp.cs4218.impl.app.SortApplication;
+import sg.edu.nus.comp.cs4218.impl.app.TailApplication;
+
+/**
+ * Maps command names to the applications that implement them. The built-in
+ * applications keep no state between runs, so a single instance of each is
+ * shared by all invocations. Further applications are registered through
+ * {@link ApplicationProvider}, either explicitly or via
+ * {@link ServiceLoader}; a provider may replace a built-in application.
+ * Providers that cannot be loaded are reported and skipped, so the built-in
+ * applications are always available.
+ */
+public final class ApplicationRegistry {
+	private static final Map<String, ApplicationProvider> PROVIDERS = new ConcurrentHashMap<>();
+
+	static {
+		register("cat", new CatApplication());
+		register("echo", new EchoApplication());
+		register("head", new HeadApplication());
+		register("tail", new TailApplication());
+		register("date", new DateApplication());
+		register("fmt", new FmtApplication());
+		register("sort", new SortApplication());
+		register("comm", new CommApplication());
+		register("bc", new BcApplication());
+		register("cal", new CalApplication());
+		registerAll(ServiceLoader.load(ApplicationProvider.class).iterator());
+	}
+
+	private ApplicationRegistry() {
+	}
+
+	/**
+	 * Registers every provider the iterator yields. A provider that fails to
+	 * load is reported on stderr and the remaining ones are still registered.
+	 *
+	 * @param providers
+	 *            Iterator over the providers, such as one from a
+	 *            {@link ServiceLoader}.
+	 */
+	static void registerAll(Iterator<ApplicationProvider> providers) {
+		while (true) {
+			try {
+				if (!providers.hasNext()) {
+					return;
+				}
+				register(providers.next());
+			} catch (ServiceConfigurationError e) {
+				System.err.println("Skipping application provider: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Registers a stateless application that is shared by all invocations of
+	 * the command.
+	 *
+	 * @param name
+	 *            Command name of the application.
+	 * @param application
+	 *            The application instance.
+	 */
+	public static void register(final String name, final Application application) {
+		register(new ApplicationProvider() {
+			@Override
+			public String getName() {
+				return name;
+			}
+
+			@Override
+			public Application getApplication() {
+				return application;
+			}
+		});
+	}
+
+	/**
+	 * Registers a provider under its command name, replacing any application
+	 * registered under the same name.
+	 *
+	 * @param provider
+	 *            The provider of the application.
+	 */
+	public static void register(ApplicationProvider provider) {
+		PROVIDERS.put(provider.getName(), provider);
+	}
+
+	/**
+	 * Removes the application registered under the command name, if any.
+	 *
+	 * @param name
+	 *            Command name of the application.
+	 */
+	public static void unregister(String name) {
+		PROVIDERS.remove(name);
+	}
+
+	/**
+	 * Returns the application to run for the command name.
+	 *
+	 * @param name
+	 *            Command name of the application.
+	 * @return the application, or null if no application is registered under
+	 *         the name
+	 */
+	public static Application lookup(String name) {
+		if (name == null) {
+			return null;
+		}
+		ApplicationProvider provider = PROVIDERS.get(name);
+		return provider == null ? null : provider.getApplication();
+	}
+}
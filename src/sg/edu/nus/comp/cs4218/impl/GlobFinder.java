@@ -1,23 +1,70 @@
 package sg.edu.nus.comp.cs4218.impl;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.PatternSyntaxException;
 
+import sg.edu.nus.comp.cs4218.misc.DirectoryCache;
+
+/**
+ * Finds the paths under a root directory that match a glob pattern.
+ *
+ * {@link #find()} splits the pattern into path segments and only lists the
+ * directories whose names match the segment at their depth, so a pattern such
+ * as <code>logs/*.txt</code> reads a single directory however large the tree
+ * below it is. Once a segment containing <code>**</code> is reached every
+ * directory below is searched, since it may match any number of levels.
+ * Directories are listed in parallel on the common {@link ForkJoinPool},
+ * through a {@link DirectoryCache} if one is given.
+ *
+ * Patterns that cannot be split, because a group or bracket expression holds a
+ * separator, are matched against every path in the tree instead.
+ */
 public class GlobFinder extends SimpleFileVisitor<Path> {
+	private static final String RECURSIVE_WILDCARD = "**";
+
 	private final PathMatcher matcher;
 	private final List<String> filePaths;
+	private final String absoluteRoot;
+	private final DirectoryCache directoryCache;
+	private List<PathMatcher> segmentMatchers;
+	private int firstRecursiveSegment;
 
 	public GlobFinder(String pattern, String absoluteRoot) {
+		this(pattern, absoluteRoot, null);
+	}
+
+	/**
+	 * Creates a finder that lists directories through a cache.
+	 *
+	 * @param pattern
+	 *            glob pattern relative to the root
+	 * @param absoluteRoot
+	 *            absolute path of the directory to search
+	 * @param directoryCache
+	 *            cache of directory listings, or null to always list
+	 */
+	public GlobFinder(String pattern, String absoluteRoot, DirectoryCache directoryCache) {
 		filePaths = new ArrayList<>();
+		this.absoluteRoot = absoluteRoot;
+		this.directoryCache = directoryCache;
 		String globPattern = separatorsToSystem("glob:" + absoluteRoot + '/' + pattern);
 		matcher = FileSystems.getDefault().getPathMatcher(globPattern);
+		compileSegments(separatorsToSystem(pattern));
 	}
 
 	void globFind(Path path) {
@@ -38,10 +85,88 @@ public class GlobFinder extends SimpleFileVisitor<Path> {
 		return FileVisitResult.CONTINUE;
 	}
 
+	/**
+	 * Searches the root directory for paths matching the pattern.
+	 *
+	 * @return the matching paths in sorted order
+	 * @throws IOException
+	 *             If the root or a directory that may hold a match cannot be
+	 *             read
+	 */
+	public List<String> find() throws IOException {
+		Path root = Paths.get(absoluteRoot);
+		if (segmentMatchers == null || !Files.isDirectory(root)) {
+			Files.walkFileTree(root, this);
+		} else {
+			try {
+				filePaths.addAll(ForkJoinPool.commonPool().invoke(new ListTask(root, 0)));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+		Collections.sort(filePaths);
+		return filePaths;
+	}
+
 	public List<String> getResults() {
 		return filePaths;
 	}
 
+	/**
+	 * Splits the pattern at every separator outside of groups and bracket
+	 * expressions and compiles a matcher for each segment. Leaves
+	 * segmentMatchers null if the pattern cannot be split.
+	 */
+	private void compileSegments(String pattern) {
+		if (File.separatorChar != '/') {
+			return;
+		}
+		List<String> segments = new ArrayList<>();
+		int start = 0;
+		int groupDepth = 0;
+		boolean inBracket = false;
+		for (int i = 0; i < pattern.length(); i++) {
+			char chr = pattern.charAt(i);
+			if (inBracket) {
+				inBracket = chr != ']';
+				if (chr == '/') {
+					return;
+				}
+			} else if (chr == '[') {
+				inBracket = true;
+			} else if (chr == '{') {
+				groupDepth++;
+			} else if (chr == '}') {
+				groupDepth--;
+			} else if (chr == '/') {
+				if (groupDepth > 0) {
+					return;
+				}
+				segments.add(pattern.substring(start, i));
+				start = i + 1;
+			}
+		}
+		segments.add(pattern.substring(start));
+
+		List<PathMatcher> matchers = new ArrayList<>();
+		firstRecursiveSegment = segments.size();
+		for (int i = 0; i < segments.size(); i++) {
+			String segment = segments.get(i);
+			if (segment.isEmpty()) {
+				return;
+			}
+			if (segment.contains(RECURSIVE_WILDCARD) && firstRecursiveSegment == segments.size()) {
+				firstRecursiveSegment = i;
+			}
+			try {
+				matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + segment));
+			} catch (PatternSyntaxException e) {
+				return;
+			}
+		}
+		segmentMatchers = matchers;
+	}
+
 	private String separatorsToSystem(String path) {
 		if (path == null) {
 			return null;
@@ -53,4 +178,51 @@ public class GlobFinder extends SimpleFileVisitor<Path> {
 			return path.replace('\\', File.separatorChar);
 		}
 	}
+
+	/**
+	 * Lists a directory at the given depth below the root, keeping the
+	 * entries that match and searching the subdirectories that may hold
+	 * matches in parallel. Symbolic links to directories are not followed.
+	 */
+	private class ListTask extends RecursiveTask<List<String>> {
+		private static final long serialVersionUID = 1L;
+		private final Path dir;
+		private final int depth;
+
+		ListTask(Path dir, int depth) {
+			this.dir = dir;
+			this.depth = depth;
+		}
+
+		@Override
+		protected List<String> compute() {
+			List<String> found = new ArrayList<>();
+			List<ListTask> subtasks = new ArrayList<>();
+			boolean recursive = depth >= firstRecursiveSegment;
+			boolean lastSegment = depth == segmentMatchers.size() - 1;
+			List<DirectoryCache.Entry> entries;
+			try {
+				entries = directoryCache == null ? DirectoryCache.readDirectory(dir) : directoryCache.list(dir);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			for (DirectoryCache.Entry entry : entries) {
+				Path path = entry.getPath();
+				if (!recursive && !segmentMatchers.get(depth).matches(path.getFileName())) {
+					continue;
+				}
+				if ((recursive || lastSegment) && matcher.matches(path)) {
+					found.add(path.toString());
+				}
+				if ((recursive || !lastSegment) && entry.isDirectory()) {
+					subtasks.add(new ListTask(path, depth + 1));
+				}
+			}
+			invokeAll(subtasks);
+			for (ListTask subtask : subtasks) {
+				found.addAll(subtask.join());
+			}
+			return found;
+		}
+	}
 }
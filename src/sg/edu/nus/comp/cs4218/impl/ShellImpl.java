@@ -22,19 +22,11 @@ import sg.edu.nus.comp.cs4218.Environment;
 import sg.edu.nus.comp.cs4218.Shell;
 import sg.edu.nus.comp.cs4218.exception.AbstractApplicationException;
 import sg.edu.nus.comp.cs4218.exception.ShellException;
-import sg.edu.nus.comp.cs4218.impl.app.BcApplication;
-import sg.edu.nus.comp.cs4218.impl.app.CalApplication;
-import sg.edu.nus.comp.cs4218.impl.app.CatApplication;
-import sg.edu.nus.comp.cs4218.impl.app.CommApplication;
-import sg.edu.nus.comp.cs4218.impl.app.DateApplication;
-import sg.edu.nus.comp.cs4218.impl.app.EchoApplication;
-import sg.edu.nus.comp.cs4218.impl.app.FmtApplication;
-import sg.edu.nus.comp.cs4218.impl.app.HeadApplication;
-import sg.edu.nus.comp.cs4218.impl.app.SortApplication;
-import sg.edu.nus.comp.cs4218.impl.app.TailApplication;
 import sg.edu.nus.comp.cs4218.impl.cmd.CallCommand;
+import sg.edu.nus.comp.cs4218.impl.cmd.CommandParser;
 import sg.edu.nus.comp.cs4218.impl.cmd.PipeCommand;
-import sg.edu.nus.comp.cs4218.impl.cmd.SequenceCommand;
+import sg.edu.nus.comp.cs4218.misc.DirectoryCache;
+import sg.edu.nus.comp.cs4218.misc.LruCache;
 
 /**
  * A Shell is a command interpreter and forms the backbone of the entire
@@ -61,6 +53,12 @@ public class ShellImpl implements Shell {
 	public static final int ONE = 1;
 	public static final int TWO = 2;
 	public static final String PIPE = "|";
+	public static final int PARSE_CACHE_SIZE = 8192;
+	public static final int DIRECTORY_CACHE_SIZE = 1024;
+
+	private static final LruCache<String, Command> PARSE_CACHE = new LruCache<String, Command>(PARSE_CACHE_SIZE);
+	private static final DirectoryCache DIRECTORY_CACHE = new DirectoryCache(DIRECTORY_CACHE_SIZE);
+	private static final Pattern PATTERN_BQ = Pattern.compile("`([^\\n`]*)`");
 
 	/**
 	 * Searches for and processes the commands enclosed by back quotes for
@@ -87,11 +85,8 @@ public class ShellImpl implements Shell {
 		// Back quoted: any char except \n,`
 		String[] resultArr = new String[argsArray.length];
 		System.arraycopy(argsArray, 0, resultArr, 0, argsArray.length);
-		String patternBQ = "`([^\\n`]*)`";
-		Pattern patternBQp = Pattern.compile(patternBQ);
-
 		for (int i = 0; i < argsArray.length; i++) {
-			Matcher matcherBQ = patternBQp.matcher(argsArray[i]);
+			Matcher matcherBQ = PATTERN_BQ.matcher(argsArray[i]);
 			if (matcherBQ.find()) {// found backquoted
 				String bqStr = matcherBQ.group(1);
 
@@ -113,7 +108,8 @@ public class ShellImpl implements Shell {
 
 	/**
 	 * Static method to run the application as specified by the application
-	 * command keyword and arguments.
+	 * command keyword and arguments. The application is looked up in the
+	 * {@link ApplicationRegistry}.
 	 *
 	 * @param app
 	 *            String containing the keyword that specifies what application
@@ -135,28 +131,8 @@ public class ShellImpl implements Shell {
 	 */
 	public static void runApp(String app, String[] argsArray, InputStream inputStream, OutputStream outputStream)
 			throws AbstractApplicationException, ShellException {
-		Application absApp = null;
-		if (("cat").equals(app)) {// cat [FILE]...
-			absApp = new CatApplication();
-		} else if (("echo").equals(app)) {// echo [args]...
-			absApp = new EchoApplication();
-		} else if (("head").equals(app)) {// head [OPTIONS] [FILE]
-			absApp = new HeadApplication();
-		} else if (("tail").equals(app)) {// tail [OPTIONS] [FILE]
-			absApp = new TailApplication();
-		} else if (("date").equals(app)) {// tail [OPTIONS] [FILE]
-			absApp = new DateApplication();
-		} else if (("fmt").equals(app)) {// tail [OPTIONS] [FILE]
-			absApp = new FmtApplication();
-		} else if (("sort").equals(app)) {// tail [OPTIONS] [FILE]
-			absApp = new SortApplication();
-		} else if (("comm").equals(app)) {// tail [OPTIONS] [FILE]
-			absApp = new CommApplication();
-		} else if (("bc").equals(app)) {// tail [OPTIONS] [FILE]
-			absApp = new BcApplication();
-		} else if (("cal").equals(app)) {// tail [OPTIONS] [FILE]
-			absApp = new CalApplication();
-		} else { // invalid command
+		Application absApp = ApplicationRegistry.lookup(app);
+		if (absApp == null) { // invalid command
 			throw new ShellException(app + ": " + EXP_INVALID_APP);
 		}
 		absApp.run(argsArray, inputStream, outputStream);
@@ -187,7 +163,8 @@ public class ShellImpl implements Shell {
 
 	/**
 	 * Static method to creates an outputStream based on the file name or file
-	 * path.
+	 * path. The cached listing of the directory holding the file is dropped,
+	 * since the file may have just been created.
 	 *
 	 * @param outputStreamS
 	 *            String of file name or file path.
@@ -205,6 +182,7 @@ public class ShellImpl implements Shell {
 		} catch (FileNotFoundException e) {
 			throw new ShellException(e);
 		}
+		DIRECTORY_CACHE.invalidate(outputFile.getAbsoluteFile().getParentFile().toPath());
 		return fOutputStream;
 	}
 
@@ -335,7 +313,13 @@ public class ShellImpl implements Shell {
 	}
 
 	/**
-	 * Attempt to pass using grammar syntax and return parent command.
+	 * Attempt to pass using grammar syntax and return parent command. The
+	 * command line is parsed by {@link CommandParser} in a single scan.
+	 * 
+	 * Parsed commands are kept in an LRU cache keyed by the command line, so
+	 * that a repeated command line skips tokenizing. Commands do not change
+	 * once parsed; globbing and command substitution happen when the command
+	 * is evaluated, so a cached command can be evaluated any number of times.
 	 *
 	 * @param cmdline
 	 *            The string to parse into a command
@@ -343,27 +327,27 @@ public class ShellImpl implements Shell {
 	 * @throws ShellException
 	 */
 	public static Command parse(String cmdline) throws ShellException {
-		int commandIndex = 0;
-		Command[] possibleCommands = new Command[3];
-		possibleCommands[0] = new CallCommand(cmdline);
-		possibleCommands[1] = new SequenceCommand(cmdline);
-		possibleCommands[2] = new PipeCommand(cmdline);
+		Command command = PARSE_CACHE.get(cmdline);
+		if (command == null) {
+			command = CommandParser.parse(cmdline);
+			PARSE_CACHE.put(cmdline, command);
+		}
+		return command;
+	}
 
-		while (true) {
-			try {
-				possibleCommands[commandIndex].parse();
-				return possibleCommands[commandIndex];
-			} catch (ShellException e) {
-				if (++commandIndex == possibleCommands.length) {
-					throw e;
-				} else if (e.getMessage().contains(SequenceCommand.MISSING_ARG)) {
-					throw e;
-				}
+	/**
+	 * Returns the cache of parsed command lines used by
+	 * {@link #parse(String)}.
+	 */
+	public static LruCache<String, Command> getParseCache() {
+		return PARSE_CACHE;
+	}
 
-			} catch (StackOverflowError soe) {
-				throw new ShellException(soe + "Invalid command for parsing");
-			}
-		}
+	/**
+	 * Returns the cache of directory listings used to expand globs.
+	 */
+	public static DirectoryCache getDirectoryCache() {
+		return DIRECTORY_CACHE;
 	}
 
 	/**
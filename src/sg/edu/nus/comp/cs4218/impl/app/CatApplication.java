@@ -1,11 +1,15 @@
 package sg.edu.nus.comp.cs4218.impl.app;
 
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 
 import sg.edu.nus.comp.cs4218.Application;
@@ -25,6 +29,7 @@ import sg.edu.nus.comp.cs4218.exception.CatException;
  * </p>
  */
 public class CatApplication implements Application {
+	private static final int BUFFER_SIZE = 64 * 1024;
 
 	/**
 	 * Runs the cat application with the specified arguments.
@@ -92,11 +97,10 @@ public class CatApplication implements Application {
 
 			for (int j = 0; j < filePaths.size() - 1; j++) {
 				try {
-					byte[] byteFileArray = Files.readAllBytes(filePaths.get(j));
-					if (byteFileArray.length <= 0) { // Empty file
+					if (Files.size(filePaths.get(j)) <= 0) { // Empty file
 						continue;
 					}
-					stdout.write(byteFileArray);
+					copyFile(filePaths.get(j), stdout);
 					byte[] newLine = System.lineSeparator().getBytes("UTF-8");
 					stdout.write(newLine);
 					stdout.flush();
@@ -106,9 +110,7 @@ public class CatApplication implements Application {
 			}
 			if (!filePaths.isEmpty()) {
 				try {
-					byte[] byteFileArray = Files.readAllBytes(filePaths.get(filePaths.size() - 1));
-
-					stdout.write(byteFileArray);
+					copyFile(filePaths.get(filePaths.size() - 1), stdout);
 					stdout.flush();
 				} catch (IOException e1) {
 					throw new CatException("IOException: " + e1);
@@ -123,9 +125,12 @@ public class CatApplication implements Application {
 	 */
 	private void readFromStdin(InputStream stdin, OutputStream stdout) throws CatException {
 		try {
-			int intCount;
-			while ((intCount = stdin.read()) != -1) {
-				stdout.write(intCount);
+			// a FileInputStream may also be a pipe or device, which reports size 0
+			if (stdin instanceof FileInputStream && stdout instanceof FileOutputStream
+					&& ((FileInputStream) stdin).getChannel().size() > 0) {
+				transfer(((FileInputStream) stdin).getChannel(), (FileOutputStream) stdout);
+			} else {
+				copyStream(stdin, stdout);
 			}
 			stdout.flush();
 
@@ -134,6 +139,53 @@ public class CatApplication implements Application {
 		}
 	}
 
+	/**
+	 * Writes the content of a file to the output stream. When the output is a
+	 * file, the data is transferred between the two file channels without
+	 * passing through the heap; otherwise it is copied in fixed-size chunks.
+	 */
+	private void copyFile(Path filePath, OutputStream stdout) throws IOException {
+		if (stdout instanceof FileOutputStream) {
+			try (FileChannel source = FileChannel.open(filePath, StandardOpenOption.READ)) {
+				transfer(source, (FileOutputStream) stdout);
+			}
+		} else {
+			try (InputStream source = Files.newInputStream(filePath)) {
+				copyStream(source, stdout);
+			}
+		}
+	}
+
+	/**
+	 * Transfers the rest of the source channel to the output file, starting
+	 * from the current position of the source.
+	 */
+	private void transfer(FileChannel source, FileOutputStream stdout) throws IOException {
+		FileChannel target = stdout.getChannel();
+		long position = source.position();
+		long size = source.size();
+		while (position < size) {
+			long transferred = source.transferTo(position, size - position, target);
+			if (transferred <= 0) {
+				break;
+			}
+			position += transferred;
+		}
+		source.position(position);
+	}
+
+	/**
+	 * Copies the input stream to the output stream in chunks of
+	 * BUFFER_SIZE bytes, so memory use does not depend on the input size.
+	 */
+	private void copyStream(InputStream source, OutputStream stdout) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int numRead;
+		while ((numRead = source.read(buffer)) != -1) {
+			stdout.write(buffer, 0, numRead);
+		}
+	}
+
 	/**
 	 * Checks if a file is readable.
 	 * 
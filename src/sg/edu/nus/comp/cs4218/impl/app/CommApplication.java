@@ -1,20 +1,26 @@
 package sg.edu.nus.comp.cs4218.impl.app;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import sg.edu.nus.comp.cs4218.Environment;
 import sg.edu.nus.comp.cs4218.app.Comm;
 import sg.edu.nus.comp.cs4218.exception.CommException;
 import sg.edu.nus.comp.cs4218.misc.LineComparison;
+import sg.edu.nus.comp.cs4218.misc.LruCache;
 
 public class CommApplication implements Comm {
 
@@ -26,6 +32,11 @@ public class CommApplication implements Comm {
 	private static final int COL_TWO = 2;
 	private static final String CHARSET_UTF_8 = "UTF-8";
 	private static final String NEW_LINE = System.lineSeparator();
+	private static final String TAB_LINE = "\t";
+	private static final String UNSORTED_FLAG = "-u";
+	private static final int RESULT_CACHE_SIZE = 16;
+	private static final LruCache<String, ArrayList<ArrayList<String>>> RESULT_CACHE = new LruCache<String, ArrayList<ArrayList<String>>>(
+			RESULT_CACHE_SIZE);
 
 	/**
 	 * Returns string to print comparisons when there are no matches in both
@@ -35,15 +46,7 @@ public class CommApplication implements Comm {
 	 */
 	@Override
 	public String commNoMatches(String... args) {
-		String[] firstColArr = commOnlyFirst(args).split(NEW_LINE);
-		String[] middleColArr = commOnlySecond(args).split(NEW_LINE);
-		StringBuilder stringBuilder = new StringBuilder("");
-		for (int i = 0; i < firstColArr.length - 1; i++) {
-			stringBuilder.append(firstColArr[i]).append(middleColArr[i]).append(NEW_LINE);
-		}
-		stringBuilder.append(firstColArr[firstColArr.length - 1]).append(middleColArr[firstColArr.length - 1]);
-
-		return stringBuilder.toString();
+		return projectColumns(args, COL_ZERO, COL_ONE);
 	}
 
 	/**
@@ -54,23 +57,7 @@ public class CommApplication implements Comm {
 	 */
 	@Override
 	public String commOnlyFirst(String... args) {
-		StringBuilder stringBuilder = new StringBuilder("");
-
-		ArrayList<ArrayList<String>> mainList;
-		try {
-			mainList = getContentFromStdinOrFile(args);
-			ArrayList<String> strList1 = mainList.get(ZERO);
-			ArrayList<String> strList2 = mainList.get(ONE);
-			LineComparison lineCompare = new LineComparison(strList1, strList2);
-			ArrayList<String> firstColAl = lineCompare.compareLines().get(COL_ZERO);
-			for (int i = 0; i < firstColAl.size() - 1; i++) {
-				stringBuilder.append(firstColAl.get(i)).append(NEW_LINE);
-			}
-			stringBuilder.append(firstColAl.get(firstColAl.size() - 1));
-		} catch (CommException e) {
-			e.printStackTrace();
-		}
-		return stringBuilder.toString();
+		return projectColumns(args, COL_ZERO);
 	}
 
 	/**
@@ -81,25 +68,7 @@ public class CommApplication implements Comm {
 	 */
 	@Override
 	public String commOnlySecond(String... args) {
-		StringBuilder stringBuilder = new StringBuilder("");
-		ArrayList<ArrayList<String>> mainList;
-		try {
-			mainList = getContentFromStdinOrFile(args);
-			ArrayList<String> strList1 = mainList.get(ZERO);
-			ArrayList<String> strList2 = mainList.get(ONE);
-			LineComparison lineCompare = new LineComparison(strList1, strList2);
-			ArrayList<String> middleColAl = lineCompare.compareLines().get(COL_ONE);
-
-			for (int i = 0; i < middleColAl.size() - 1; i++) {
-				stringBuilder.append(middleColAl.get(i)).append(NEW_LINE);
-			}
-			stringBuilder.append(middleColAl.get(middleColAl.size() - 1));
-
-		} catch (CommException e) {
-			e.printStackTrace();
-		}
-
-		return stringBuilder.toString();
+		return projectColumns(args, COL_ONE);
 	}
 
 	/**
@@ -109,14 +78,7 @@ public class CommApplication implements Comm {
 	 */
 	@Override
 	public String commBothMathches(String... args) {
-		String[] firstTwoCols = commNoMatches(args).split(NEW_LINE);
-		String[] lastCol = commAllMatches(args).split(NEW_LINE);
-		StringBuilder stringBuilder = new StringBuilder("");
-		for (int i = 0; i < firstTwoCols.length - 1; i++) {
-			stringBuilder.append(firstTwoCols[i]).append(lastCol[i]).append(NEW_LINE);
-		}
-		stringBuilder.append(firstTwoCols[firstTwoCols.length - 1]).append(lastCol[firstTwoCols.length - 1]);
-		return stringBuilder.toString();
+		return projectColumns(args, COL_ZERO, COL_ONE, COL_TWO);
 	}
 
 	/**
@@ -127,86 +89,253 @@ public class CommApplication implements Comm {
 	 */
 	@Override
 	public String commAllMatches(String... args) {
-		ArrayList<ArrayList<String>> mainList;
+		return projectColumns(args, COL_TWO);
+	}
+
+	public static LruCache<String, ArrayList<ArrayList<String>>> getResultCache() {
+		return RESULT_CACHE;
+	}
+
+	/**
+	 * Joins the given columns of every row of the comparison, one row per
+	 * line.
+	 * 
+	 * @param args
+	 *            the two files to compare
+	 * @param columns
+	 *            the columns to output, in order
+	 * @return the rows, or an empty string if the files cannot be compared
+	 */
+	private String projectColumns(String[] args, int... columns) {
 		StringBuilder stringBuilder = new StringBuilder("");
 		try {
-			mainList = getContentFromStdinOrFile(args);
-			ArrayList<String> strList1 = mainList.get(ZERO);
-			ArrayList<String> strList2 = mainList.get(ONE);
-			LineComparison lineCompare = new LineComparison(strList1, strList2);
-			ArrayList<String> lastColAl = lineCompare.compareLines().get(COL_TWO);
-
-			for (int i = 0; i < lastColAl.size() - 1; i++) {
-				stringBuilder.append(lastColAl.get(i)).append(NEW_LINE);
+			ArrayList<ArrayList<String>> resultAl = getComparison(args);
+			int numRows = resultAl.get(COL_ZERO).size();
+			for (int i = 0; i < numRows; i++) {
+				if (i > 0) {
+					stringBuilder.append(NEW_LINE);
+				}
+				for (int column : columns) {
+					stringBuilder.append(resultAl.get(column).get(i));
+				}
 			}
-			stringBuilder.append(lastColAl.get(lastColAl.size() - 1));
 		} catch (CommException e) {
 			e.printStackTrace();
 		}
-
 		return stringBuilder.toString();
 	}
 
+	/**
+	 * Returns the comparison of the two files in the arguments. Results are
+	 * cached by the path, modification time and size of both files, so the
+	 * files are only read again once either of them changes.
+	 * 
+	 * @param args
+	 *            the two files to compare
+	 * @return index zero holds the rows of the first column, index one the
+	 *         second and index two the third
+	 * @throws CommException
+	 *             If the arguments are invalid or a file cannot be read
+	 */
+	private ArrayList<ArrayList<String>> getComparison(String... args) throws CommException {
+		if (args == null || args.length != TWO) {
+			return compare(getContentFromStdinOrFile(args));
+		}
+		Path currentDir = Paths.get(Environment.currentDirectory);
+		String cacheKey = getFileStamp(currentDir.resolve(args[ZERO])) + NEW_LINE
+				+ getFileStamp(currentDir.resolve(args[ONE]));
+		ArrayList<ArrayList<String>> resultAl = RESULT_CACHE.get(cacheKey);
+		if (resultAl == null) {
+			resultAl = compare(getContentFromStdinOrFile(args));
+			RESULT_CACHE.put(cacheKey, resultAl);
+		}
+		return resultAl;
+	}
+
+	private ArrayList<ArrayList<String>> compare(ArrayList<ArrayList<String>> mainList) {
+		LineComparison lineCompare = new LineComparison(mainList.get(ZERO), mainList.get(ONE));
+		return lineCompare.compareLines();
+	}
+
+	/**
+	 * Returns a string identifying the current version of a file by its path,
+	 * modification time and size.
+	 * 
+	 * @param filePath
+	 *            The path to the file
+	 * @throws CommException
+	 *             If the file is not readable
+	 */
+	private String getFileStamp(Path filePath) throws CommException {
+		catchIfFileIsReadableException(filePath);
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+			return filePath.toAbsolutePath().normalize() + "\t" + attributes.lastModifiedTime().toMillis() + "\t"
+					+ attributes.size();
+		} catch (IOException e) {
+			throw new CommException("Could not read file", e);
+		}
+	}
+
+	/**
+	 * Compares two sorted inputs and writes one row per line to stdout as the
+	 * inputs are read, so neither input is held in memory. With a single
+	 * argument the first input is read from stdin.
+	 * 
+	 * With a leading "-u" the inputs may be unsorted. The smaller file is then
+	 * loaded into memory and the other input is streamed against it, with the
+	 * unmatched lines of the smaller file written last. A stdin input is
+	 * always the one streamed.
+	 * 
+	 * @throws CommException
+	 *             If the arguments are invalid, an input cannot be read or
+	 *             stdout cannot be written
+	 */
 	@Override
-	public void run(String[] args, InputStream stdin, OutputStream stdout) throws CommException {
+	public void run(String[] arguments, InputStream stdin, OutputStream stdout) throws CommException {
+		String[] args = arguments;
+		boolean unsorted = args != null && args.length > ZERO && UNSORTED_FLAG.equals(args[ZERO]);
+		if (unsorted) {
+			args = Arrays.copyOfRange(args, ONE, args.length);
+		}
+		BufferedReader[] readers = openReaders(args, stdin);
+		if (stdout == null) {
+			closeReaders(args, readers);
+			throw new CommException("stdout is not present");
+		}
+		try {
+			final Writer writer = new BufferedWriter(new OutputStreamWriter(stdout, CHARSET_UTF_8));
+			LineComparison.RowHandler handler = new LineComparison.RowHandler() {
+				private boolean firstRow = true;
+
+				@Override
+				public void handleRow(int column, String line) throws IOException {
+					try {
+						if (!firstRow) {
+							writer.write(NEW_LINE);
+						}
+						firstRow = false;
+						writeRow(writer, column, line);
+					} catch (IOException e) {
+						throw new WriteFailure(e);
+					}
+				}
+			};
+			if (unsorted) {
+				LineComparison.compareUnsortedLines(readers[ZERO], readers[ONE], isFirstFileSmaller(args), handler);
+			} else {
+				LineComparison.compareLines(readers[ZERO], readers[ONE], handler);
+			}
+			try {
+				writer.flush();
+			} catch (IOException e) {
+				throw new WriteFailure(e);
+			}
+		} catch (WriteFailure e) {
+			throw new CommException("Could not write to output stream", e);
+		} catch (IOException e) {
+			throw new CommException("Could not read file", e);
+		} finally {
+			closeReaders(args, readers);
+		}
+	}
 
-		StringBuilder stringBuilder = new StringBuilder("");
-		ArrayList<ArrayList<String>> mainList = getContentFromStdinOrFile(args, stdin);
-		ArrayList<String> strList1 = mainList.get(ZERO);
-		ArrayList<String> strList2 = mainList.get(ONE);
-		LineComparison lineCompare = new LineComparison(strList1, strList2);
-		ArrayList<ArrayList<String>> resultAl = lineCompare.compareLines();
-		ArrayList<String> firstColAl = resultAl.get(ZERO);
-		ArrayList<String> secondColAl = resultAl.get(ONE);
-		ArrayList<String> thirdColAl = resultAl.get(TWO);
+	/**
+	 * Marks a failure to write to stdout, so that it is reported apart from
+	 * failures to read the inputs.
+	 */
+	private static class WriteFailure extends IOException {
+		private static final long serialVersionUID = 1L;
 
-		for (int i = 0; i < firstColAl.size() - 1; i++) {
-			stringBuilder.append(firstColAl.get(i)).append(secondColAl.get(i)).append(thirdColAl.get(i))
-					.append(NEW_LINE);
+		WriteFailure(IOException cause) {
+			super(cause);
 		}
-		stringBuilder.append(firstColAl.get(firstColAl.size() - 1)).append(secondColAl.get(secondColAl.size() - 1))
-				.append(thirdColAl.get(thirdColAl.size() - 1));
-		stdoutString(stdout, stringBuilder.toString());
 	}
 
 	/**
-	 * This method returns ArrayList<ArrayList<String>> containing contents of
-	 * both files in the arguments
+	 * Returns true if there are two files and the first is the smaller one.
+	 */
+	private boolean isFirstFileSmaller(String... args) throws IOException {
+		if (args.length != TWO) {
+			return false;
+		}
+		Path currentDir = Paths.get(Environment.currentDirectory);
+		return Files.size(currentDir.resolve(args[ZERO])) < Files.size(currentDir.resolve(args[ONE]));
+	}
+
+	/**
+	 * Writes a row with the line in its column and tabs in the others.
+	 */
+	private static void writeRow(Writer writer, int column, String line) throws IOException {
+		for (int i = COL_ZERO; i <= COL_TWO; i++) {
+			writer.write(i == column ? line : TAB_LINE);
+		}
+	}
+
+	/**
+	 * Opens a reader for each of the two inputs.
 	 * 
 	 * @param args
 	 *            initial arguments
 	 * @param stdin
-	 *            inputstream to be read for contents
-	 * @return ArrayList<ArrayList<String>> index zero returns an arraylist of
-	 *         string from file1 index one returns an arraylist of string from
+	 *            inputstream read as the first input if there is one argument
+	 * @return index zero holds the reader for file1, index one the reader for
 	 *         file2
 	 * @throws CommException
+	 *             If the number of arguments is wrong or an input cannot be
+	 *             opened
 	 */
-	private ArrayList<ArrayList<String>> getContentFromStdinOrFile(String[] args, InputStream stdin)
-			throws CommException {
+	private BufferedReader[] openReaders(String[] args, InputStream stdin) throws CommException {
 		Path currentDir = Paths.get(Environment.currentDirectory);
-		int file1Position = ZERO;
-		int file2Position = ZERO;
-		ArrayList<ArrayList<String>> mainList = new ArrayList<ArrayList<String>>();
-		ArrayList<String> strList1, strList2;
-
+		BufferedReader[] readers = new BufferedReader[TWO];
 		if (args == null || args.length == ZERO) {
 			throw new CommException("Length of arguments 0 or null");
 		} else if (args.length == ONE) {
-			file2Position = ZERO;
-			strList1 = readFromStdinAndWriteToStringList(stdin);
-			strList2 = getFileContents(args, currentDir, file2Position);
+			if (stdin == null) {
+				throw new CommException("Null Pointer Exception");
+			}
+			readers[ZERO] = new BufferedReader(new InputStreamReader(stdin));
+			readers[ONE] = openFileReader(args, currentDir, ZERO);
 		} else if (args.length == TWO) {
-			file1Position = ZERO;
-			file2Position = ONE;
-			strList1 = getFileContents(args, currentDir, file1Position);
-			strList2 = getFileContents(args, currentDir, file2Position);
+			readers[ZERO] = openFileReader(args, currentDir, ZERO);
+			try {
+				readers[ONE] = openFileReader(args, currentDir, ONE);
+			} catch (CommException e) {
+				closeQuietly(readers[ZERO]);
+				throw e;
+			}
 		} else {
 			throw new CommException("Length of arguments cannot be greater than 2");
 		}
-		mainList.add(strList1);
-		mainList.add(strList2);
-		return mainList;
+		return readers;
+	}
+
+	private BufferedReader openFileReader(String[] args, Path currentDir, int filePosition) throws CommException {
+		Path filePath = currentDir.resolve(args[filePosition]);
+		catchIfFileIsReadableException(filePath);
+		try {
+			return new BufferedReader(new InputStreamReader(new FileInputStream(filePath.toString())));
+		} catch (IOException e) {
+			throw new CommException("IOException", e);
+		}
+	}
+
+	/**
+	 * Closes the readers opened on files. A reader on stdin is left open for
+	 * the caller.
+	 */
+	private void closeReaders(String[] args, BufferedReader... readers) {
+		for (int i = args.length == ONE ? ONE : ZERO; i < readers.length; i++) {
+			closeQuietly(readers[i]);
+		}
+	}
+
+	private static void closeQuietly(BufferedReader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			// nothing more can be done with it
+		}
 	}
 
 	/**
@@ -304,44 +433,4 @@ public class CommApplication implements Comm {
 		catchIfFileIsReadableException(filePath);
 		return readFromFileAndWriteToStringList(filePath);
 	}
-
-	/**
-	 * Read from stdin and write to a string array
-	 * 
-	 * @param stdin
-	 *            An input Stream. Reading from stdin and not a file
-	 * @throws CommException
-	 *             If stdin. I/O exceptions caught when reading and writing from
-	 *             input and output streams.
-	 */
-
-	private ArrayList<String> readFromStdinAndWriteToStringList(InputStream stdin) throws CommException {
-		ArrayList<String> arrayList = new ArrayList<String>();
-		if (stdin == null) {
-			throw new CommException("Null Pointer Exception");
-		}
-		BufferedReader buffReader = new BufferedReader(new InputStreamReader(stdin));
-		String input = "";
-		try {
-			while ((input = buffReader.readLine()) != null) {
-				arrayList.add(input);
-			}
-		} catch (Exception e) {
-			throw new CommException("Exception caught", e);
-		}
-		return arrayList;
-	}
-
-	private void stdoutString(OutputStream stdout, String resultStr) throws CommException {
-		if (stdout == null) {
-			throw new CommException("stdout is not present");
-		}
-		try {
-			stdout.write(resultStr.getBytes(CHARSET_UTF_8));
-		} catch (IOException e) {
-			throw new CommException("Could not write to output stream", e);
-		}
-
-	}
-
-}
\ No newline at end of file
+}
@@ -1,19 +1,25 @@
 package sg.edu.nus.comp.cs4218.impl.app;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 
 import sg.edu.nus.comp.cs4218.Application;
 import sg.edu.nus.comp.cs4218.Environment;
 import sg.edu.nus.comp.cs4218.exception.FmtException;
+import sg.edu.nus.comp.cs4218.misc.WordWrapper;
 
 /**
  * The fmt command wraps the given text at the specified maximum width without
@@ -25,14 +31,16 @@ import sg.edu.nus.comp.cs4218.exception.FmtException;
  * <dt>OPTIONS</dt>
  * <dd> “​­w 50​” means print the given text where each line has at most 50 
  * characters.      Default value is 80.</dd>
+ * <dd>“-o” means balance the lengths of the lines instead of filling each
+ * line before starting the next.</dd>
  * <dt>FILE</dt>
  * <dd>the name of the file(s). If no files are specified, use stdin.</dd>
  * </dl>
  * </p>
  */
 public class FmtApplication implements Application {
-	private static final String NEW_LINE = System.lineSeparator();
 	private static final String WIDTH_FLAG = "-w";
+	private static final String OPTIMAL_FLAG = "-o";
 
 	/**
 	 * Runs the fmt application with the specified arguments.
@@ -40,6 +48,8 @@ public class FmtApplication implements Application {
 	 * @param args
 	 *            Array of arguments for the application. Each array element is
 	 *            the path to a file. If no files are specified stdin is used.
+	 *            The flag -o may appear anywhere to choose optimal line
+	 *            breaks.
 	 * @param stdin
 	 *            An InputStream. The input for the command is read from this
 	 *            InputStream if no files are specified.
@@ -51,9 +61,19 @@ public class FmtApplication implements Application {
 	 *             If the file(s) specified do not exist or are unreadable.
 	 */
 	@Override
-	public void run(String[] args, InputStream stdin, OutputStream stdout) throws FmtException {
+	public void run(String[] arguments, InputStream stdin, OutputStream stdout) throws FmtException {
 		int wrapWidth = 80;
 		int filePosition = -1;
+		boolean optimal = false;
+		ArrayList<String> remaining = new ArrayList<String>();
+		for (String arg : arguments) {
+			if (OPTIMAL_FLAG.equals(arg)) {
+				optimal = true;
+			} else {
+				remaining.add(arg);
+			}
+		}
+		String[] args = remaining.toArray(new String[remaining.size()]);
 		switch (args.length) {
 		case 0:
 			break;
@@ -79,23 +99,38 @@ public class FmtApplication implements Application {
 			throw new FmtException("Incorrect number of arguments");
 		}
 
-		String inputString = "";
+		Reader reader;
 		if (filePosition > -1) {
 			Path currentDir = Paths.get(Environment.currentDirectory);
 			Path filePath = currentDir.resolve(args[filePosition]);
-			boolean isFileReadable = false;
-			isFileReadable = checkIfFileIsReadable(filePath);
-			if (isFileReadable) {
-				inputString = readFromFile(filePath);
-			} else {
-				throw new FmtException("File not readable");
+			checkIfFileIsReadable(filePath);
+			try {
+				reader = new InputStreamReader(new FileInputStream(filePath.toString()));
+			} catch (IOException e) {
+				throw new FmtException(e);
 			}
+		} else if (stdin == null) {
+			throw new FmtException("Null pointer exception - stdin is not defined");
 		} else {
-			inputString = readFromStdin(stdin);
+			reader = new InputStreamReader(stdin);
 		}
 
-		String wrappedString = wrapText(inputString, wrapWidth);
-		writeToStdout(stdout, wrappedString);
+		try {
+			if (stdout == null) {
+				throw new FmtException("Null pointer exception - stdout is not defined");
+			}
+			Writer writer = new BufferedWriter(new OutputStreamWriter(stdout));
+			WordWrapper wrapper = new WordWrapper(writer, wrapWidth, optimal);
+			wrapper.wrap(reader);
+			wrapper.finish();
+			writer.flush();
+		} catch (IOException e) {
+			throw new FmtException(e);
+		} finally {
+			if (filePosition > -1) {
+				closeQuietly(reader);
+			}
+		}
 	}
 
 	/**
@@ -107,44 +142,18 @@ public class FmtApplication implements Application {
 	 *            The value of the wrap width
 	 * @return wrappedString Wrapped string
 	 * @throws FmtException
-	 *             If the wrap width is too short (i.e. shorter than the longest
-	 *             word in the string
+	 *             If the text cannot be wrapped
 	 */
 	String wrapText(String stringToWrap, int wrapWidth) throws FmtException {
-		if (stringToWrap.isEmpty()) {
-			return "";
-		}
-		String stringToWrapM = stringToWrap.replaceAll("(\\r|\\n)", " ");
-		String stringToWrapMod = stringToWrapM.replaceAll(" +", " ");
-		String[] strArray = stringToWrapMod.split(" ");
-		String wrappedString = "";
-		int count = 0;
-		String tempLine = "";
-		while (count < strArray.length) {
-			String trimmedString = strArray[count].replace(String.valueOf((char) 160), " ").trim();
-			if (tempLine.length() == 0) {
-				if (wrapWidth < trimmedString.length()) {
-					wrappedString = wrappedString.concat(trimmedString + NEW_LINE);
-					++count;
-				} else {
-					tempLine = tempLine.concat(trimmedString);
-					++count;
-				}
-			} else {
-				if ((tempLine.length() + strArray[count].replace(String.valueOf((char) 160), " ").trim().length()
-						+ 1) < wrapWidth) {
-					tempLine = tempLine.concat(" " + strArray[count].replace(String.valueOf((char) 160), " ").trim());
-					++count;
-				} else {
-					wrappedString = wrappedString.concat(tempLine + NEW_LINE);
-					tempLine = "";
-				}
-			}
+		StringWriter writer = new StringWriter();
+		WordWrapper wrapper = new WordWrapper(writer, wrapWidth);
+		try {
+			wrapper.wrap(new StringReader(stringToWrap));
+			wrapper.finish();
+		} catch (IOException e) {
+			throw new FmtException(e);
 		}
-
-		wrappedString = wrappedString.concat(tempLine);
-
-		return wrappedString + NEW_LINE;
+		return writer.toString();
 	}
 
 	/**
@@ -172,87 +181,12 @@ public class FmtApplication implements Application {
 		return wrapWidth;
 	}
 
-	/**
-	 * Wraps text to specified width without breaking words
-	 * 
-	 * @param stdout
-	 *            An OutputStream. Write stringToWrite to this OutputStream.
-	 * @param stringToWrite
-	 *            The string to write to stdout
-	 * @throws FmtException
-	 *             If stdout is null or there is an error writing to stdout
-	 */
-	void writeToStdout(OutputStream stdout, String stringToWrite) throws FmtException {
-		if (stdout == null) {
-			throw new FmtException("Null pointer exception - stdout is not defined");
-		}
-
-		PrintWriter printWriter = new PrintWriter(stdout);
-		printWriter.print(stringToWrite);
-		printWriter.flush();
-		printWriter.close();
-	}
-
-	/**
-	 * Reads from file
-	 *
-	 * @param filePath
-	 *            A Path. Read file from the file path given.
-	 * @return Concatenated string read from file
-	 * @throws FmtException
-	 *             If there is an error reading from the file
-	 */
-	String readFromFile(Path filePath) throws FmtException {
-		String concatString = "";
-
+	private static void closeQuietly(Reader reader) {
 		try {
-			FileInputStream fileInStream = new FileInputStream(filePath.toString());
-			BufferedReader buffReader = new BufferedReader(new InputStreamReader(fileInStream));
-
-			String input = "";
-
-			while ((input = buffReader.readLine()) != null) {
-				concatString = concatString.concat(input + " ");
-			}
-
-			buffReader.close();
+			reader.close();
 		} catch (IOException e) {
-			throw new FmtException(e);
-		}
-
-		return concatString.trim();
-	}
-
-	/**
-	 * Reads from stdin
-	 *
-	 * @param stdin
-	 *            An InputStream. Read input from this InputStream.
-	 * @return Concatenated string read from stdin
-	 * @throws FmtException
-	 *             If stdin is null or there is an error reading from stdin
-	 */
-	String readFromStdin(InputStream stdin) throws FmtException {
-		String concatString = "";
-
-		try {
-			if (stdin == null) {
-				throw new FmtException("Null pointer exception - stdin is not defined");
-			}
-
-			BufferedReader buffReader = new BufferedReader(new InputStreamReader(stdin));
-
-			String input = "";
-
-			while ((input = buffReader.readLine()) != null) {
-				concatString = concatString.concat(input + " ");
-			}
-
-			buffReader.close();
-		} catch (Exception e) {
-			throw new FmtException(e);
+			// nothing more can be done with it
 		}
-		return concatString.trim();
 	}
 
 	/**
@@ -1,50 +1,58 @@
 package sg.edu.nus.comp.cs4218.impl.app;
 
-import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import sg.edu.nus.comp.cs4218.Application;
 import sg.edu.nus.comp.cs4218.Environment;
 import sg.edu.nus.comp.cs4218.exception.HeadException;
+import sg.edu.nus.comp.cs4218.misc.MultiFilePrinter;
 
 /**
  * Print first N lines of the file (or input stream). If there are less than N
  * lines, print existing lines without rising an exception.
  * 
  * <p>
- * <b>Command format:</b> <code>head [OPTIONS] [FILE]</code>
+ * <b>Command format:</b> <code>head [OPTIONS] [FILE]...</code>
  * <dl>
  * <dt>OPTIONS</dt>
  * <dd>&quot;-n 15&quot; means printing 15 lines. Print first 10 lines if not
- * specified.</dd>
+ * specified. &quot;-c 15&quot; means printing the first 15 bytes instead.</dd>
  * <dt>FILE</dt>
- * <dd>name of the file. If not specified, use stdin.</dd>
+ * <dd>name of the file. If not specified, use stdin. If more than one file is
+ * specified, each is printed under a header with its name.</dd>
  * </dl>
  * </p>
  */
 public class HeadApplication implements Application {
 
 	private final static String DASHN = "-n";
+	private final static String DASHC = "-c";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final byte[] NEW_LINE_BYTES = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+	private static final boolean LF_IS_NEW_LINE = "\n".equals(System.lineSeparator());
 
 	/**
 	 * Runs the head application with the specified arguments.
 	 * 
 	 * @param args
-	 *            Array of arguments for the application. Only one file could be
-	 *            specified. If file is specified, the input should be read from
-	 *            the file, else, input is read from stdin. If a flag,-n, is
+	 *            Array of arguments for the application. Any number of files
+	 *            could be specified. If files are specified, the input should
+	 *            be read from the files, else, input is read from stdin. If a flag,-n, is
 	 *            specified, it should be accompanied by a number to indicate
 	 *            the number of lines. If flag is not specified, the first 10
-	 *            lines would be printed.
+	 *            lines would be printed. The flag -c can be used instead of -n
+	 *            to print a number of bytes.
 	 * @param stdin
 	 *            An InputStream. The input for the command is read from this
 	 *            InputStream if no files are specified.
@@ -68,6 +76,18 @@ public class HeadApplication implements Application {
 		if (!headCommandFlagisValid(args, stdin, stdout)) {
 			throw new HeadException("Incorrect flag used");
 		}
+		if (args != null && args.length >= 2 && args[0].equals(DASHC)) {
+			long numBytesToRead = checkNumberOfBytesInput(args[1]);
+			if (readFromStdin(args)) {
+				if (stdin == null) {
+					throw new HeadException("Null Pointer Exception");
+				}
+				copyBytes(stdin, stdout, numBytesToRead);
+			} else {
+				readBytesFromArgsAndWriteToStdout(args, stdout, numBytesToRead);
+			}
+			return;
+		}
 		if (headCommandContainsNumberofLinesToRead(args)) {
 			numLinesToRead = checkNumberOfLinesInput(args[1]);
 		} else {
@@ -87,8 +107,8 @@ public class HeadApplication implements Application {
 	 * @param args
 	 *            len == 0: no command or filename provided len == 1: filename
 	 *            provided. inputstream is ignored len == 2: command "-n" "x",
-	 *            where x is the number of lines to print len == 3: command and
-	 *            filename are provided, input stream is ignored
+	 *            where x is the number of lines to print len &gt;= 3: command
+	 *            and filenames are provided, input stream is ignored
 	 * @param stdin
 	 *            containing inputstream that data is read from when filename is
 	 *            not provided in the args
@@ -106,72 +126,144 @@ public class HeadApplication implements Application {
 				if (stdin == null) {
 					return false;
 				}
-			} else {
-				if (args.length > 3) { // Too many args
-					return false;
-				}
-				if ((args.length == 2 && stdin == null) || (args.length == 0 && stdin == null)) { // No
-																									// input
-					return false;
-				}
+			} else if (readFromStdin(args) && stdin == null) { // No input
+				return false;
 			}
 			return true;
 		}
 	}
 
 	private boolean headCommandFlagisValid(String[] args, InputStream stdin, OutputStream stdout) {
-		if (args != null && (args.length == 3 || args.length == 2)) {
-			return (args[0].equals(DASHN));
+		if (args != null && getFirstFilePosition(args) > 0) {
+			return (DASHN.equals(args[0]) || DASHC.equals(args[0]));
 		} else {
 			return true;
 		}
 	}
 
 	private boolean headCommandContainsNumberofLinesToRead(String... args) throws HeadException {
-		if (args != null && args.length >= 2) {
+		if (args != null && getFirstFilePosition(args) > 0 && DASHN.equals(args[0])) {
 			return checkNumberOfLinesInput(args[1]) > 0;
 		}
 		return false;
 	}
 
 	private boolean readFromStdin(String... args) {
-		return (args == null || args.length == 0 || args.length == 2);
+		return (args == null || getFirstFilePosition(args) >= args.length);
+	}
+
+	/**
+	 * Returns the position of the first filename in args, which follows the
+	 * flag and its number if the first argument is a flag.
+	 */
+	private int getFirstFilePosition(String... args) {
+		if (args.length >= 2 && (args[0] == null || args[0].startsWith("-"))) {
+			return 2;
+		}
+		return 0;
 	}
 
 	/**
 	 * This methods reads filename from args, and the write to stdoutput stream.
 	 * 
 	 * @param args
-	 *            len == 1: filename is at arg[0] len == 3: filename is at
-	 *            arg[2] This filename is then added to path of current
-	 *            directory that the user is in. The path is then checked using
-	 *            method checkIfFileIsReadable(filePath)
+	 *            the filenames start at arg[0], or at arg[2] if arg[0] is a
+	 *            flag. These filenames are then added to path of current
+	 *            directory that the user is in. The paths are then checked
+	 *            using method checkIfFileIsReadable(filePath)
 	 * @param stdout
-	 *            Data is written to stdout from the file.
+	 *            Data is written to stdout from the files.
 	 * @param numLinesToRead
-	 *            Number of lines of the file to be read
+	 *            Number of lines of each file to be read
 	 * @throws HeadException
 	 */
-	void readFromArgsAndWriteToStdout(String[] args, OutputStream stdout, int numLinesToRead) throws HeadException {
-		// check file
-		Path currentDir = Paths.get(Environment.currentDirectory);
-		int filePosition = 0;
-		if (args.length == 3) {
-			filePosition = 2;
+	void readFromArgsAndWriteToStdout(String[] args, OutputStream stdout, final int numLinesToRead)
+			throws HeadException {
+		List<Path> filePaths = resolveFilePaths(args);
+		if (filePaths.size() == 1) {
+			readFromFileAndWriteToStdout(stdout, numLinesToRead, filePaths.get(0));
+			return;
+		}
+		printFiles(args, filePaths, stdout, new MultiFilePrinter.PartReader() {
+			@Override
+			public void readPart(Path filePath, OutputStream out) throws HeadException {
+				readFromFileAndWriteToStdout(out, numLinesToRead, filePath);
+			}
+		});
+	}
+
+	/**
+	 * This methods reads filenames from args, and writes the first bytes of
+	 * each file to stdout.
+	 * 
+	 * @param args
+	 *            the filenames start at arg[2]
+	 * @param stdout
+	 *            Data is written to stdout from the files.
+	 * @param numBytesToRead
+	 *            Number of bytes of each file to be read
+	 * @throws HeadException
+	 */
+	void readBytesFromArgsAndWriteToStdout(String[] args, OutputStream stdout, final long numBytesToRead)
+			throws HeadException {
+		List<Path> filePaths = resolveFilePaths(args);
+		if (filePaths.size() == 1) {
+			readBytesFromFileAndWriteToStdout(stdout, numBytesToRead, filePaths.get(0));
+			return;
 		}
-		Path filePath = null;
+		printFiles(args, filePaths, stdout, new MultiFilePrinter.PartReader() {
+			@Override
+			public void readPart(Path filePath, OutputStream out) throws HeadException {
+				readBytesFromFileAndWriteToStdout(out, numBytesToRead, filePath);
+			}
+		});
+	}
+
+	/**
+	 * Prints the part of every file under a header with its name, reading the
+	 * files concurrently.
+	 */
+	private void printFiles(String[] args, List<Path> filePaths, OutputStream stdout,
+			MultiFilePrinter.PartReader partReader) throws HeadException {
+		List<String> names = Arrays.asList(args).subList(getFirstFilePosition(args), args.length);
 		try {
-			filePath = currentDir.resolve(args[filePosition]);
-		} catch (InvalidPathException e) {
+			new MultiFilePrinter(partReader).print(names, filePaths, stdout);
+		} catch (HeadException e) {
+			throw e;
+		} catch (Exception e) {
 			throw new HeadException(e);
 		}
-		boolean isFileReadable = false;
-		isFileReadable = checkIfFileIsReadable(filePath);
+	}
 
-		if (isFileReadable) {
-			readFromFileAndWriteToStdout(stdout, numLinesToRead, filePath);
+	/**
+	 * Resolves the filenames in args against the current directory and checks
+	 * that every file can be read.
+	 * 
+	 * @param args
+	 *            the filenames start at arg[0], or at arg[2] if arg[0] is a
+	 *            flag
+	 * @return the paths of the files
+	 * @throws HeadException
+	 *             If there is no filename, a filename is invalid or a file is
+	 *             not readable
+	 */
+	private List<Path> resolveFilePaths(String... args) throws HeadException {
+		Path currentDir = Paths.get(Environment.currentDirectory);
+		List<Path> filePaths = new ArrayList<Path>();
+		for (int i = getFirstFilePosition(args); i < args.length; i++) {
+			Path filePath = null;
+			try {
+				filePath = currentDir.resolve(args[i]);
+			} catch (InvalidPathException e) {
+				throw new HeadException(e);
+			}
+			checkIfFileIsReadable(filePath);
+			filePaths.add(filePath);
 		}
-
+		if (filePaths.isEmpty()) {
+			throw new HeadException("No file specified");
+		}
+		return filePaths;
 	}
 
 	/**
@@ -195,22 +287,10 @@ public class HeadApplication implements Application {
 			throw new HeadException("Null Pointer Exception");
 		}
 
-		BufferedReader buffReader = new BufferedReader(new InputStreamReader(stdin, StandardCharsets.UTF_8));
-
-		int numRead = 0;
-
-		while (numLinesToRead != numRead) {
-			try {
-				String inputString = buffReader.readLine();
-				if (inputString == null) { // signify end of file
-					break;
-				}
-				stdout.write(inputString.getBytes(StandardCharsets.UTF_8));
-				stdout.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
-				numRead++;
-			} catch (IOException e) {
-				throw new HeadException(e);
-			}
+		try {
+			copyLines(stdin, stdout, numLinesToRead);
+		} catch (IOException e) {
+			throw new HeadException(e);
 		}
 	}
 
@@ -250,32 +330,146 @@ public class HeadApplication implements Application {
 	 */
 	void readFromFileAndWriteToStdout(OutputStream stdout, int numLinesRequired, Path filePath) throws HeadException {
 
-		String encoding = "UTF-8";
+		if (stdout == null) {
+			throw new HeadException("Stdout is null");
+		}
+
+		try (InputStream fileInStream = new FileInputStream(filePath.toString())) {
+			copyLines(fileInStream, stdout, numLinesRequired);
+		} catch (IOException e) {
+			throw new HeadException(e);
+		}
+	}
 
+	/**
+	 * Read from file and output the first number of bytes specified to stdout
+	 * 
+	 * @param stdout
+	 *            An Output Stream. The output is written to this stream
+	 * @param numBytesRequired
+	 *            The number of bytes required to output
+	 * @param filePath
+	 *            A Path. Read file from the file path given
+	 * @throws HeadException
+	 *             If stdout is null. Other exceptions caught when reading and
+	 *             writing from input and output streams.
+	 */
+	void readBytesFromFileAndWriteToStdout(OutputStream stdout, long numBytesRequired, Path filePath)
+			throws HeadException {
 		if (stdout == null) {
 			throw new HeadException("Stdout is null");
 		}
 
+		try (InputStream fileInStream = new FileInputStream(filePath.toString())) {
+			copyBytes(fileInStream, stdout, numBytesRequired);
+		} catch (IOException e) {
+			throw new HeadException(e);
+		}
+	}
+
+	/**
+	 * Parse the number of bytes to print from String to long
+	 * 
+	 * @param numBytesString
+	 *            The number of bytes received in String
+	 * @return numBytes The number of bytes received in long
+	 * @throws HeadException
+	 *             If the numBytesString in not a number or is negative.
+	 */
+	long checkNumberOfBytesInput(String numBytesString) throws HeadException {
+		long numBytes;
 		try {
-			FileInputStream fileInStream = new FileInputStream(filePath.toString());
-			BufferedReader buffReader = new BufferedReader(new InputStreamReader(fileInStream));
+			numBytes = Long.parseLong(numBytesString);
+		} catch (NumberFormatException nfe) {
+			throw new HeadException(nfe, "Invalid command, not a number.");
+		}
+		if (numBytes < 0) {
+			throw new HeadException("Invalid command, negative number.");
+		}
+		return numBytes;
+	}
 
-			int numLinesWrote = 0;
-			String input = "";
-			while ((input = buffReader.readLine()) != null) {
-				if (numLinesWrote == numLinesRequired) {
-					break;
+	/**
+	 * Copies the first lines of input to stdout. The input is scanned for line
+	 * terminators as raw bytes, and runs of lines that already end with the
+	 * line separator are written in a single write. Lines ending with another
+	 * terminator have it replaced by the line separator.
+	 * 
+	 * @param input
+	 *            stream to read from
+	 * @param stdout
+	 *            stream to write to
+	 * @param numLines
+	 *            number of lines to copy
+	 * @throws IOException
+	 *             If there is an error reading input or writing stdout
+	 */
+	private static void copyLines(InputStream input, OutputStream stdout, int numLines) throws IOException {
+		if (numLines == 0) {
+			return;
+		}
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int linesWritten = 0;
+		boolean afterCarriageReturn = false;
+		boolean linePending = false;
+		int bytesRead;
+		while ((bytesRead = input.read(buffer)) != -1) {
+			int rangeStart = 0;
+			for (int i = 0; i < bytesRead; i++) {
+				byte current = buffer[i];
+				boolean endOfCrLf = current == '\n' && afterCarriageReturn;
+				afterCarriageReturn = current == '\r';
+				if (endOfCrLf) {
+					rangeStart = i + 1;
+				} else if (current != '\n' && current != '\r') {
+					linePending = true;
+				} else {
+					if (current == '\r' || !LF_IS_NEW_LINE) {
+						stdout.write(buffer, rangeStart, i - rangeStart);
+						stdout.write(NEW_LINE_BYTES);
+						rangeStart = i + 1;
+					}
+					linePending = false;
+					if (++linesWritten == numLines) {
+						stdout.write(buffer, rangeStart, i + 1 - rangeStart);
+						return;
+					}
 				}
-				stdout.write(input.getBytes(encoding));
-				stdout.write(System.lineSeparator().getBytes(encoding));
-				numLinesWrote++;
 			}
-			buffReader.close();
+			stdout.write(buffer, rangeStart, bytesRead - rangeStart);
+		}
+		if (linePending) {
+			stdout.write(NEW_LINE_BYTES);
+		}
+	}
 
+	/**
+	 * Copies the first bytes of input to stdout, never reading past them.
+	 * 
+	 * @param input
+	 *            stream to read from
+	 * @param stdout
+	 *            stream to write to
+	 * @param numBytes
+	 *            number of bytes to copy
+	 * @throws HeadException
+	 *             If there is an error reading input or writing stdout
+	 */
+	private static void copyBytes(InputStream input, OutputStream stdout, long numBytes) throws HeadException {
+		byte[] buffer = new byte[(int) Math.min(numBytes, BUFFER_SIZE)];
+		long remaining = numBytes;
+		try {
+			while (remaining > 0) {
+				int bytesRead = input.read(buffer, 0, (int) Math.min(remaining, buffer.length));
+				if (bytesRead == -1) {
+					break;
+				}
+				stdout.write(buffer, 0, bytesRead);
+				remaining -= bytesRead;
+			}
 		} catch (IOException e) {
 			throw new HeadException(e);
 		}
-
 	}
 
 	/**
@@ -1,10 +1,6 @@
 package sg.edu.nus.comp.cs4218.impl.app;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -23,7 +19,6 @@ public class SortApplication implements Sort {
 	private static final int TWO = 2;
 	private static final int THREE = 3;
 	private static final int FOUR = 4;
-	private static final String CHARSET_UTF_8 = "UTF-8";
 
 	/**
 	 * Returns an ordered list of lines containing only simple letters
@@ -277,83 +272,57 @@ public class SortApplication implements Sort {
 		return SortHelper.sortHelperWithNumFlag(extractedList);
 	}
 
-	@Override
-	public void run(String[] args, InputStream stdin, OutputStream stdout) throws SortException {
-		String[] toSort = SortHelper.sortProcess(args, stdin);
-		stdoutSortedArray(stdout, toSort);
-	}
-
 	/**
-	 * write the sorted array to the outstream
+	 * Sorts the lines of the files given, or of stdin if there are none, and
+	 * writes them to stdout. Input larger than the memory budget is sorted in
+	 * runs that are spilled to temporary files and merged.
 	 * 
-	 * @param outputstream
-	 *            stream to write out
-	 * @param string
-	 *            array sorted array
-	 * @throws SortException
-	 */
-	private void stdoutSortedArray(OutputStream stdout, String... toSort) throws SortException {
-		if (stdout == null) {
-			throw new SortException("stdout is not present");
-		}
-		for (int i = 0; i < toSort.length; i++) {
-			try {
-				stdout.write(toSort[i].getBytes(CHARSET_UTF_8));
-				stdout.write(System.lineSeparator().getBytes("UTF-8"));
-			} catch (IOException e) {
-				throw new SortException("Could not write to output stream", e);
-			}
-		}
-	}
-
-	/**
-	 * Read from stdin and write to a string array
+	 * <p>
+	 * <b>Command format:</b>
+	 * <code>sort [-n] [-S SIZE] [-T DIR] [-A ALGORITHM] [FILE]...</code>
+	 * <dl>
+	 * <dt>-n</dt>
+	 * <dd>sort numbers at the start of lines in ascending order</dd>
+	 * <dt>-S SIZE</dt>
+	 * <dd>memory budget, in kilobytes unless followed by b, K, M, G or T</dd>
+	 * <dt>-T DIR</dt>
+	 * <dd>directory for temporary files, the system default if not given</dd>
+	 * <dt>-A ALGORITHM</dt>
+	 * <dd>&quot;merge&quot; for parallel merge sort, the default, or
+	 * &quot;radix&quot; for MSD radix sort of lines in natural order</dd>
+	 * </dl>
+	 * </p>
 	 * 
-	 * @param stdin
-	 *            An input Stream. Reading from stdin and not a file
 	 * @throws SortException
-	 *             If stdin. I/O exceptions caught when reading and writing from
-	 *             input and output streams.
+	 *             If an option or file is invalid, or the input cannot be
+	 *             read, sorted or written.
 	 */
-
-	public static String[] readFromStdinAndWriteToStringArray(InputStream stdin) throws SortException {
-		List<String> resultList = new ArrayList<String>();
-		if (stdin == null) {
-			throw new SortException("Null Pointer Exception");
-		}
-		BufferedReader buffReader = new BufferedReader(new InputStreamReader(stdin));
-		String input = "";
-		try {
-			while ((input = buffReader.readLine()) != null) {
-				resultList.add(input);
-			}
-		} catch (Exception e) {
-			throw new SortException("Exception caught", e);
-		}
-		return resultList.toArray(new String[resultList.size()]);
+	@Override
+	public void run(String[] args, InputStream stdin, OutputStream stdout) throws SortException {
+		SortHelper.sortProcess(args, stdin, stdout);
 	}
 
 	/**
-	 * Catch the missing 'n' flag when the argument length is of 2
+	 * Resolves the files to sort and checks that they can be read
 	 * 
 	 * @param args
 	 *            arguments present in the command
 	 * @param currentDir
 	 *            path where the source file resides
 	 * @param filePosition
-	 *            position of the filename in the args
-	 * @return void
+	 *            position of the first filename in the args
+	 * @return the paths of the files
 	 * @throws SortException
-	 *             If the 'n' flag is missing in the command format
+	 *             If a file is not readable
 	 */
-	public static String[] getFileContents(String[] args, Path currentDir, int filePosition) throws SortException {
+	public static List<Path> getFilePaths(String[] args, Path currentDir, int filePosition) throws SortException {
 		ArrayList<Path> filePathList = new ArrayList<Path>();
 		for (int i = filePosition; i < args.length; i++) {
 			Path filePath = currentDir.resolve(args[i]);
 			catchIfFileIsReadableException(filePath);
 			filePathList.add(filePath);
 		}
-		return readFromFileAndWriteToStringArray(filePathList);
+		return filePathList;
 	}
 
 	/**
@@ -383,33 +352,4 @@ public class SortApplication implements Sort {
 			throw new SortException("Could not read file");
 		}
 	}
-
-	/**
-	 * Read from file and return a string array
-	 * 
-	 * @param filePath
-	 *            A Path. Read file from the file path given
-	 * @throws SortException
-	 *             Exceptions caught when reading and writing from input file.
-	 */
-	private static String[] readFromFileAndWriteToStringArray(ArrayList<Path> filePathList) throws SortException {
-		List<String> arrayList = new ArrayList<String>();
-		for (int i = 0; i < filePathList.size(); i++) {
-			try {
-				FileInputStream fileInStream = new FileInputStream(filePathList.get(i).toString());
-				BufferedReader buffReader = new BufferedReader(new InputStreamReader(fileInStream));
-
-				String input = "";
-				while ((input = buffReader.readLine()) != null) {
-					arrayList.add(input);
-				}
-				buffReader.close();
-
-			} catch (IOException e) {
-				throw new SortException("IOException", e);
-			}
-		}
-
-		return arrayList.toArray(new String[arrayList.size()]);
-	}
 }
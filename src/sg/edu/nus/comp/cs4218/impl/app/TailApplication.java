@@ -1,52 +1,70 @@
 package sg.edu.nus.comp.cs4218.impl.app;
 
 import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
-import java.util.Stack;
+import java.util.List;
 
 import sg.edu.nus.comp.cs4218.Application;
 import sg.edu.nus.comp.cs4218.Environment;
 import sg.edu.nus.comp.cs4218.exception.TailException;
+import sg.edu.nus.comp.cs4218.misc.FileFollower;
+import sg.edu.nus.comp.cs4218.misc.LineRingBuffer;
+import sg.edu.nus.comp.cs4218.misc.MultiFilePrinter;
 
 /**
  * Print last N lines of the file (or input stream). If there are less than N
  * lines, print existing lines without rising an exception.
  * 
  * <p>
- * <b>Command format:</b> <code>tail [OPTIONS] [FILE]</code>
+ * <b>Command format:</b> <code>tail [OPTIONS] [FILE]...</code>
  * <dl>
  * <dt>OPTIONS</dt>
  * <dd>&quot;-n 15&quot; means printing 15 lines. Print last 10 lines if not
  * specified.</dd>
+ * <dd>&quot;-f&quot; means keep printing data appended to the file until
+ * terminated. &quot;-F&quot; does the same but follows the file name across
+ * rotation, re-opening the file when it is replaced. Ignored when reading
+ * stdin. Only one file can be followed.</dd>
  * <dt>FILE</dt>
- * <dd>name of the file. If not specified, use stdin.</dd>
+ * <dd>name of the file. If not specified, use stdin. If more than one file is
+ * specified, each is printed under a header with its name.</dd>
  * </dl>
  * </p>
  */
 public class TailApplication implements Application {
 
-	private static final String NEW_LINE = System.lineSeparator();
 	private static final String NUMLINES_FLAG = "-n";
+	private static final String FOLLOW_FLAG = "-f";
+	private static final String FOLLOW_NAME_FLAG = "-F";
+	private static final int BLOCK_SIZE = 8 * 1024;
+	private static final byte[] NEW_LINE_BYTES = System.lineSeparator().getBytes();
 
 	/**
 	 * Runs the tail application with the specified arguments.
 	 * 
 	 * @param args
-	 *            Array of arguments for the application. Only one file could be
-	 *            specified. If file is specified, the input should be read from
-	 *            the file, else, input is read from stdin. If a flag,-n, is
+	 *            Array of arguments for the application. Any number of files
+	 *            could be specified. If files are specified, the input should
+	 *            be read from the files, else, input is read from stdin. If a flag,-n, is
 	 *            specified, it should be accompanied by a number to indicate
 	 *            the number of lines. If flag is not specified, the last 10
-	 *            lines would be printed.
+	 *            lines would be printed. The flags -f or -F may appear
+	 *            anywhere to keep following the file.
 	 * 
 	 * @param stdin
 	 *            An InputStream. The input for the command is read from this
@@ -61,51 +79,93 @@ public class TailApplication implements Application {
 	 *             criteria.
 	 */
 	@Override
-	public void run(String[] args, InputStream stdin, OutputStream stdout) throws TailException {
+	public void run(String[] arguments, InputStream stdin, OutputStream stdout) throws TailException {
 		int numLinesToRead = 10;
 		int filePosition = -1;
-		if (args != null) {
-			switch (args.length) {
-			case 0:
-				break;
-			case 1:
-				filePosition = 0;
-				break;
-			case 2:
-				if (args[0].equals((NUMLINES_FLAG))) {
-					numLinesToRead = checkNumberOfLinesInput(args[1]);
+		boolean follow = false;
+		boolean followName = false;
+		String[] args = null;
+		if (arguments != null) {
+			ArrayList<String> remaining = new ArrayList<String>();
+			for (String arg : arguments) {
+				if (FOLLOW_FLAG.equals(arg)) {
+					follow = true;
+				} else if (FOLLOW_NAME_FLAG.equals(arg)) {
+					follow = true;
+					followName = true;
 				} else {
-					throw new TailException("Incorrect flag used to denote number of lines to print");
+					remaining.add(arg);
 				}
-				break;
-			case 3:
-				if (args[0].equals(NUMLINES_FLAG)) {
-					numLinesToRead = checkNumberOfLinesInput(args[1]);
-					filePosition = 2;
-				} else {
-					throw new TailException("Incorrect flag used to denote number of lines to print");
+			}
+			args = remaining.toArray(new String[remaining.size()]);
+		}
+		if (args != null && args.length > 0) {
+			filePosition = 0;
+			if (args.length >= 2 && args[0].startsWith("-")) {
+				if (!args[0].equals(NUMLINES_FLAG)) {
+					throw new TailException(args.length <= 3 ? "Incorrect flag used to denote number of lines to print"
+							: "Incorrect number of arguments");
 				}
-				break;
-			default:
-				throw new TailException("Incorrect number of arguments");
+				numLinesToRead = checkNumberOfLinesInput(args[1]);
+				filePosition = 2;
 			}
 		}
 
-		Stack<String> inputString = null;
-		if (filePosition > -1) {
+		if (filePosition > -1 && filePosition < args.length) {
 			Path currentDir = Paths.get(Environment.currentDirectory);
-			Path filePath = currentDir.resolve(args[filePosition]);
-			boolean isFileReadable = false;
-			isFileReadable = checkIfFileIsReadable(filePath);
-			if (isFileReadable) {
-				inputString = readFromFile(filePath);
+			List<Path> filePaths = new ArrayList<Path>();
+			for (int i = filePosition; i < args.length; i++) {
+				Path filePath = currentDir.resolve(args[i]);
+				checkIfFileIsReadable(filePath);
+				filePaths.add(filePath);
+			}
+			if (filePaths.size() > 1 && follow) {
+				throw new TailException("Only one file can be followed");
+			} else if (filePaths.size() > 1) {
+				printFiles(Arrays.asList(args).subList(filePosition, args.length), filePaths, numLinesToRead, stdout);
+			} else if (follow) {
+				followFile(filePaths.get(0), numLinesToRead, followName, stdout);
+			} else {
+				writeToStdout(stdout, readFromFile(filePaths.get(0), numLinesToRead));
 			}
 		} else {
-			inputString = readFromStdin(stdin);
+			writeToStdout(stdout, readFromStdin(stdin, numLinesToRead));
 		}
+	}
 
-		LinkedList<String> wrappedString = extractTail(inputString, numLinesToRead);
-		writeToStdout(stdout, wrappedString);
+	/**
+	 * Prints the last lines of every file under a header with its name,
+	 * reading the files concurrently.
+	 * 
+	 * @param names
+	 *            names of the files as given in the arguments
+	 * @param filePaths
+	 *            paths of the files
+	 * @param numLines
+	 *            number of lines to print from each file
+	 * @param stdout
+	 *            An OutputStream. The output is written to this stream
+	 * @throws TailException
+	 *             If stdout is null or a file cannot be read
+	 */
+	void printFiles(List<String> names, List<Path> filePaths, final int numLines, OutputStream stdout)
+			throws TailException {
+		if (stdout == null) {
+			throw new TailException("Null pointer exception - stdout is not defined");
+		}
+		MultiFilePrinter printer = new MultiFilePrinter(new MultiFilePrinter.PartReader() {
+			@Override
+			public void readPart(Path filePath, OutputStream out) throws TailException {
+				writeToStdout(out, readFromFile(filePath, numLines));
+			}
+		});
+		try {
+			printer.print(names, filePaths, stdout);
+		} catch (TailException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new TailException(e);
+		}
 	}
 
 	/**
@@ -131,35 +191,6 @@ public class TailApplication implements Application {
 		return numLines;
 	}
 
-	/**
-	 * Wraps text to specified width without breaking words
-	 * 
-	 * @param stringToWrap
-	 *            String to wrap
-	 * @param wrapWidth
-	 *            The value of the wrap width
-	 * @return wrappedString Wrapped string
-	 * @throws TailException
-	 *             If the wrap width is too short (i.e. shorter than the longest
-	 *             word in the string
-	 */
-	LinkedList<String> extractTail(Stack<String> textToExtractFrom, int numLines) throws TailException {
-		LinkedList<String> extractedText = new LinkedList<String>();
-		if (textToExtractFrom.isEmpty() || numLines == 0) {
-			return extractedText;
-		}
-		int count = 0;
-		while (count < numLines) {
-			if (textToExtractFrom.isEmpty()) {
-				break;
-			} else {
-				extractedText.addFirst(textToExtractFrom.pop());
-				++count;
-			}
-		}
-		return extractedText;
-	}
-
 	/**
 	 * Checks if a file is readable.
 	 * 
@@ -194,72 +225,229 @@ public class TailApplication implements Application {
 
 		PrintWriter printWriter = new PrintWriter(stdout);
 		while (!linesToWrite.isEmpty()) {
-			printWriter.println(linesToWrite.removeFirst().replaceAll("(\\r|\\n)", ""));
+			printWriter.println(linesToWrite.removeFirst());
 		}
 		printWriter.flush();
 		printWriter.close();
 	}
 
 	/**
-	 * Reads from file
+	 * Writes the raw bytes of the buffered lines to specified OutputStream
+	 * 
+	 * @param stdout
+	 *            An OutputStream. Write the lines to this OutputStream.
+	 * @param linesToWrite
+	 *            The lines to write to stdout
+	 * @throws TailException
+	 *             If stdout is null or there is an error writing to stdout
+	 */
+	void writeToStdout(OutputStream stdout, LineRingBuffer linesToWrite) throws TailException {
+		if (stdout == null) {
+			throw new TailException("Null pointer exception - stdout is not defined");
+		}
+
+		try {
+			linesToWrite.writeTo(stdout, NEW_LINE_BYTES);
+			stdout.flush();
+			stdout.close();
+		} catch (IOException e) {
+			throw new TailException(e);
+		}
+	}
+
+	/**
+	 * Reads the last lines of a file. The file is scanned backwards from the
+	 * end in fixed-size blocks until enough line terminators have been seen,
+	 * so only the tail of the file is ever read.
 	 *
 	 * @param filePath
 	 *            A Path. Read file from the file path given.
-	 * @return textToExtract Stack of read lines
+	 * @param numLines
+	 *            The number of lines to read from the end of the file
+	 * @return tailLines The last numLines lines of the file
 	 * @throws TailException
 	 *             If there is an error reading from the file
 	 */
-	Stack<String> readFromFile(Path filePath) throws TailException {
-		Stack<String> textToExtract = new Stack<String>();
+	LinkedList<String> readFromFile(Path filePath, int numLines) throws TailException {
+		LinkedList<String> tailLines = new LinkedList<String>();
+		if (numLines == 0) {
+			return tailLines;
+		}
 
-		try {
-			FileInputStream fileInStream = new FileInputStream(filePath.toString());
-			BufferedReader buffReader = new BufferedReader(new InputStreamReader(fileInStream));
+		try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+			long start = findTailStart(channel, numLines);
+			BufferedReader buffReader = new BufferedReader(
+					new InputStreamReader(Channels.newInputStream(channel.position(start))));
 
 			String input = "";
 
 			while ((input = buffReader.readLine()) != null) {
-				if (!input.equals(NEW_LINE)) {
-					textToExtract.push(input);
-				}
+				tailLines.add(input);
 			}
+		} catch (IOException e) {
+			throw new TailException(e);
+		}
+		return tailLines;
+	}
 
-			buffReader.close();
+	/**
+	 * Prints the last lines of a file, then keeps copying data appended to it
+	 * to stdout until the thread running the application is interrupted. The
+	 * bytes of the file are copied unchanged, so a partial last line is
+	 * completed by what is appended to it and line terminators are kept.
+	 *
+	 * @param filePath
+	 *            A Path. Follow the file at the file path given.
+	 * @param numLines
+	 *            The number of lines to print before following
+	 * @param followName
+	 *            True to re-open the file when it is replaced
+	 * @param stdout
+	 *            An OutputStream. Write the output to this OutputStream.
+	 * @throws TailException
+	 *             If stdout is null or there is an error reading from the file
+	 *             or writing to stdout
+	 */
+	void followFile(Path filePath, int numLines, boolean followName, OutputStream stdout) throws TailException {
+		if (stdout == null) {
+			throw new TailException("Null pointer exception - stdout is not defined");
+		}
+
+		try {
+			FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
+			long offset = channel.size();
+			FileFollower follower;
+			try {
+				if (numLines > 0) {
+					copyRange(channel, findTailStart(channel, numLines), offset, stdout);
+				}
+				stdout.flush();
+				follower = new FileFollower(filePath, channel, offset, followName);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			follower.follow(stdout);
+		} catch (ClosedByInterruptException e) {
+			// terminated while reading, the interrupt status is still set
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		} catch (IOException e) {
 			throw new TailException(e);
 		}
-		return textToExtract;
 	}
 
 	/**
-	 * Reads from stdin
+	 * Copies the bytes of the file between two offsets to stdout unchanged.
+	 */
+	private void copyRange(FileChannel channel, long start, long end, OutputStream stdout) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+		long position = start;
+		while (position < end) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			int bytesRead = channel.read(buffer, position);
+			if (bytesRead < 0) {
+				throw new IOException("File truncated while reading");
+			}
+			stdout.write(buffer.array(), 0, bytesRead);
+			position += bytesRead;
+		}
+	}
+
+	/**
+	 * Finds the offset at which the last numLines lines of the file begin.
+	 * Lines are terminated by '\n', '\r' or "\r\n", and a terminator at the
+	 * very end of the file does not start another line.
+	 *
+	 * @param channel
+	 *            The file to scan
+	 * @param numLines
+	 *            The number of lines wanted, at least 1
+	 * @return the offset of the first wanted line, or 0 if the file has no
+	 *         more than numLines lines
+	 * @throws IOException
+	 *             If there is an error reading from the file
+	 */
+	long findTailStart(FileChannel channel, int numLines) throws IOException {
+		long size = channel.size();
+		ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+		int linesFound = 0;
+		int nextByte = -1;
+		long blockEnd = size;
+
+		while (blockEnd > 0) {
+			long blockStart = Math.max(0, blockEnd - BLOCK_SIZE);
+			block.clear();
+			block.limit((int) (blockEnd - blockStart));
+			while (block.hasRemaining()) {
+				if (channel.read(block, blockStart + block.position()) < 0) {
+					throw new IOException("File truncated while reading");
+				}
+			}
+			for (int i = block.limit() - 1; i >= 0; i--) {
+				int current = block.get(i);
+				long offset = blockStart + i;
+				boolean isLineEnd = current == '\n' || (current == '\r' && nextByte != '\n');
+				if (isLineEnd && offset < size - 1 && ++linesFound == numLines) {
+					return offset + 1;
+				}
+				nextByte = current;
+			}
+			blockEnd = blockStart;
+		}
+		return 0;
+	}
+
+	/**
+	 * Reads from stdin, keeping only the raw bytes of the last lines read.
+	 * Memory use is bounded by the number of lines kept however long the input
+	 * is. Lines are split on '\n', '\r' or "\r\n" as by
+	 * {@link BufferedReader#readLine()}.
 	 *
 	 * @param stdin
 	 *            An InputStream. Read input from this InputStream.
-	 * @return textToExtract Stack of read lines
+	 * @param numLines
+	 *            The number of lines to keep
+	 * @return tailLines Buffer holding the last numLines lines read
 	 * @throws TailException
 	 *             If stdin is null or there is an error reading from stdin
 	 */
-	Stack<String> readFromStdin(InputStream stdin) throws TailException {
-		Stack<String> textToExtract = new Stack<String>();
+	LineRingBuffer readFromStdin(InputStream stdin, int numLines) throws TailException {
 		if (stdin == null) {
 			throw new TailException("Null pointer exception - stdin is not defined");
 		}
+		LineRingBuffer tailLines = new LineRingBuffer(numLines);
+		byte[] buffer = new byte[BLOCK_SIZE];
+		boolean afterCarriageReturn = false;
 		try {
-			BufferedReader buffReader = new BufferedReader(new InputStreamReader(stdin));
-
-			String input = "";
-
-			while ((input = buffReader.readLine()) != null) {
-				textToExtract.push(input);
+			int bytesRead;
+			while ((bytesRead = stdin.read(buffer)) != -1) {
+				int lineStart = 0;
+				for (int i = 0; i < bytesRead; i++) {
+					byte current = buffer[i];
+					if (current == '\n' && afterCarriageReturn) {
+						lineStart = i + 1;
+					} else if (current == '\n' || current == '\r') {
+						tailLines.write(buffer, lineStart, i - lineStart);
+						tailLines.endLine();
+						lineStart = i + 1;
+					}
+					afterCarriageReturn = current == '\r';
+				}
+				if (lineStart < bytesRead) {
+					tailLines.write(buffer, lineStart, bytesRead - lineStart);
+				}
 			}
-
-			buffReader.close();
+			if (tailLines.hasPendingLine()) {
+				tailLines.endLine();
+			}
+			stdin.close();
 		} catch (IOException e) {
 			throw new TailException(e);
 		}
 
-		return textToExtract;
+		return tailLines;
 	}
 
 }
@@ -1,16 +1,20 @@
 package sg.edu.nus.comp.cs4218.impl.cmd;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,11 +44,18 @@ public class CallCommand implements Command {
 	public static final String EXP_GLOB_MULTI = "Ambigious globbing for IO Redirection.";
 	public static final String EXP_GLOB_NONE = "File not found.";
 
+	private static final String WHITESPACE = " \t\n\u000B\f\r";
+	private static final String UNQUOTED_EXCLUDED = "\"'`;|<>";
+	private static final String REDIR_EXCLUDED = "\n\"`'<>";
+
 	String app;
 	String cmdline, inputStreamS, outputStreamS;
 	String[] argsArray;
+	BitSet globTokens;
 	Boolean error;
 	String errorMsg;
+	private final Set<Thread> runningThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+	private final Set<Closeable> openStreams = Collections.newSetFromMap(new ConcurrentHashMap<Closeable, Boolean>());
 
 	public CallCommand(String cmdline) {
 		this.cmdline = cmdline.trim();
@@ -52,6 +63,7 @@ public class CallCommand implements Command {
 		error = false;
 		errorMsg = "";
 		argsArray = new String[0];
+		globTokens = new BitSet();
 	}
 
 	public CallCommand() {
@@ -91,19 +103,37 @@ public class CallCommand implements Command {
 		InputStream inputStream;
 		OutputStream outputStream;
 
-		argsArray = ShellImpl.processBQ(argsArray);
+		String[] args = ShellImpl.processBQ(expandGlobArgs());
 
 		if (("").equals(inputStreamS)) {// empty
 			inputStream = stdin;
 		} else { // not empty
-			inputStream = ShellImpl.openInputRedir(inputStreamS);
+			inputStream = ShellImpl.openInputRedir(resolveRedirGlob(inputStreamS));
 		}
 		if (("").equals(outputStreamS)) { // empty
 			outputStream = stdout;
 		} else {
-			outputStream = ShellImpl.openOutputRedir(outputStreamS);
+			outputStream = ShellImpl.openOutputRedir(resolveRedirGlob(outputStreamS));
+		}
+		Thread current = Thread.currentThread();
+		runningThreads.add(current);
+		if (inputStream != stdin) {
+			openStreams.add(inputStream);
+		}
+		if (outputStream != stdout) {
+			openStreams.add(outputStream);
+		}
+		try {
+			ShellImpl.runApp(app, args, inputStream, outputStream);
+		} finally {
+			runningThreads.remove(current);
+			if (inputStream != stdin) {
+				openStreams.remove(inputStream);
+			}
+			if (outputStream != stdout) {
+				openStreams.remove(outputStream);
+			}
 		}
-		ShellImpl.runApp(app, argsArray, inputStream, outputStream);
 		ShellImpl.closeInputStream(inputStream);
 		ShellImpl.closeOutputStream(outputStream);
 	}
@@ -125,6 +155,7 @@ public class CallCommand implements Command {
 		Boolean result = true;
 		int endIdx = 0;
 		String str = " " + cmdline + " ";
+		globTokens.clear();
 		try {
 			endIdx = extractArgs(str, cmdVector);
 			cmdVector.add(""); // reserved for input redir
@@ -170,7 +201,11 @@ public class CallCommand implements Command {
 	 * characters, quotes, newlines, semicolons �;�, �|�, �<� and �>�. Double
 	 * quoted: any char except \n, ", ` Single quoted: any char except \n, '
 	 * Back quotes in Double Quote for command substitution: DQ rules for
-	 * outside BQ + `anything but \n` in BQ.
+	 * outside BQ + `anything but \n` in BQ. Unquoted arguments containing
+	 * wildcards are marked in globTokens and expanded on evaluation.
+	 * 
+	 * The command is scanned once from left to right. Each argument has to be
+	 * preceded and followed by whitespace.
 	 * 
 	 * @param str
 	 *            String of command to split.
@@ -185,54 +220,147 @@ public class CallCommand implements Command {
 	 *             parsing.
 	 */
 	int extractArgs(String str, Vector<String> cmdVector) throws ShellException {
-		String patternDash = "[\\s]+(-[A-Za-z]*)[\\s]";
-		String patternUQ = "[\\s]+([^\\s\"'`\\n;|<>]*)[\\s]";
-		String patternDQ = "[\\s]+\"([^\\n\"`]*)\"[\\s]";
-		String patternSQ = "[\\s]+\'([^\\n']*)\'[\\s]";
-		String patternBQ = "[\\s]+(`[^\\n`]*`)[\\s]";
-		String patternBQinDQ = "[\\s]+\"([^\\n\"`]*`[^\\n]*`[^\\n\"`]*)\"[\\s]";
-		String[] patterns = { patternDash, patternUQ, patternDQ, patternSQ, patternBQ, patternBQinDQ };
-		String substring;
-		int newStartIdx = 0, smallestStartIdx, smallestPattIdx, newEndIdx = 0;
-		do {
-			substring = str.substring(newEndIdx);
-			smallestStartIdx = -1;
-			smallestPattIdx = -1;
-			if (substring.trim().startsWith("<") || substring.trim().startsWith(">")) {
+		int length = str.length();
+		int newEndIdx = 0;
+		while (newEndIdx < length) {
+			int start = skipWhitespace(str, newEndIdx);
+			if (start == length || str.charAt(start) == '<' || str.charAt(start) == '>') {
 				break;
 			}
-			for (int i = 0; i < patterns.length; i++) {
-				Pattern pattern = Pattern.compile(patterns[i]);
-				Matcher matcher = pattern.matcher(substring);
-				if (matcher.find() && (matcher.start() < smallestStartIdx || smallestStartIdx == -1)) {
-					smallestPattIdx = i;
-					smallestStartIdx = matcher.start();
-				}
+			if (start == newEndIdx) { // tokens must be separated by whitespace
+				throw syntaxError();
 			}
-			if (smallestPattIdx != -1) { // if a pattern is found
-				Pattern pattern = Pattern.compile(patterns[smallestPattIdx]);
-				Matcher matcher = pattern.matcher(str.substring(newEndIdx));
-				if (matcher.find()) {
-					String matchedStr = matcher.group(1);
-					newStartIdx = newEndIdx + matcher.start();
-					if (newStartIdx != newEndIdx) {
-						error = true;
-						errorMsg = ShellImpl.EXP_SYNTAX;
-						throw new ShellException(errorMsg);
-					} // check if there's any invalid token not detected
-					if (smallestPattIdx == 2 || smallestPattIdx == 3 || smallestPattIdx == 4 || smallestPattIdx == 5
-							|| !matchedStr.contains("*")) {
-						cmdVector.add(matchedStr);
-					} else {
-						cmdVector.addAll(Arrays.asList(processSingleGlob(matchedStr)));
-					}
-					newEndIdx = newEndIdx + matcher.end() - 1;
+			char first = str.charAt(start);
+			int end;
+			String token;
+			if (first == '"') {
+				end = scanDoubleQuoted(str, start);
+				token = str.substring(start + 1, end - 1);
+			} else if (first == '\'') {
+				end = scanQuoted(str, start, '\'');
+				token = str.substring(start + 1, end - 1);
+			} else if (first == '`') {
+				end = scanQuoted(str, start, '`');
+				token = str.substring(start, end);
+			} else {
+				end = scanUnquoted(str, start);
+				token = str.substring(start, end);
+				if (token.indexOf('*') != -1) {
+					globTokens.set(cmdVector.size());
 				}
 			}
-		} while (smallestPattIdx != -1);
+			if (end == length || !isSpace(str.charAt(end))) {
+				throw syntaxError();
+			}
+			cmdVector.add(token);
+			newEndIdx = end;
+		}
 		return newEndIdx;
 	}
 
+	/**
+	 * Scans an unquoted token: any char except for whitespace characters,
+	 * quotes, semicolons, pipes and redirection operators.
+	 * 
+	 * @return index of the first character after the token
+	 */
+	private int scanUnquoted(String str, int start) throws ShellException {
+		int idx = start;
+		while (idx < str.length()) {
+			char chr = str.charAt(idx);
+			if (isSpace(chr) || UNQUOTED_EXCLUDED.indexOf(chr) != -1) {
+				break;
+			}
+			idx++;
+		}
+		if (idx == start) {
+			throw syntaxError();
+		}
+		return idx;
+	}
+
+	/**
+	 * Scans a single quoted or back quoted token starting at the opening
+	 * quote. The token may not span multiple lines.
+	 * 
+	 * @return index of the first character after the closing quote
+	 */
+	private int scanQuoted(String str, int start, char quote) throws ShellException {
+		int idx = start + 1;
+		while (idx < str.length() && str.charAt(idx) != quote) {
+			if (str.charAt(idx) == '\n') {
+				throw syntaxError();
+			}
+			idx++;
+		}
+		if (idx == str.length()) {
+			throw syntaxError();
+		}
+		return idx + 1;
+	}
+
+	/**
+	 * Scans a double quoted token starting at the opening quote. Back quoted
+	 * sections inside it may contain double quotes.
+	 * 
+	 * @return index of the first character after the closing quote
+	 */
+	private int scanDoubleQuoted(String str, int start) throws ShellException {
+		int idx = start + 1;
+		while (idx < str.length() && str.charAt(idx) != '"') {
+			char chr = str.charAt(idx);
+			if (chr == '\n') {
+				throw syntaxError();
+			}
+			if (chr == '`') {
+				idx = scanQuoted(str, idx, '`');
+			} else {
+				idx++;
+			}
+		}
+		if (idx == str.length()) {
+			throw syntaxError();
+		}
+		return idx + 1;
+	}
+
+	private static int skipWhitespace(String str, int start) {
+		int idx = start;
+		while (idx < str.length() && isSpace(str.charAt(idx))) {
+			idx++;
+		}
+		return idx;
+	}
+
+	/**
+	 * Scans the file name of a redirection starting after the operator. File
+	 * names may contain spaces but no quotes, newlines or redirection
+	 * operators.
+	 * 
+	 * @return index of the first character after the file name
+	 */
+	private static int scanRedirFile(String str, int start) {
+		int idx = start;
+		while (idx < str.length() && REDIR_EXCLUDED.indexOf(str.charAt(idx)) == -1) {
+			idx++;
+		}
+		return idx;
+	}
+
+	private static String toRedirFile(String str, int start, int end) {
+		return str.substring(start, end).replace(String.valueOf((char) 160), " ").trim();
+	}
+
+	private static boolean isSpace(char chr) {
+		return WHITESPACE.indexOf(chr) != -1;
+	}
+
+	private ShellException syntaxError() {
+		error = true;
+		errorMsg = ShellImpl.EXP_SYNTAX;
+		return new ShellException(errorMsg);
+	}
+
 	/**
 	 * Extraction of input redirection from cmdLine with two slots at end of
 	 * cmdVector reserved for <inputredir and >outredir. For valid inputs,
@@ -256,53 +384,29 @@ public class CallCommand implements Command {
 	 *             invalid syntax is encountered..
 	 */
 	public int extractInputRedir(String str, Vector<String> cmdVector, int endIdx) throws ShellException {
-		String substring = str.substring(endIdx);
-		String strTrm = substring.trim();
-		if (strTrm.startsWith(">") || strTrm.isEmpty()) {
+		int start = skipWhitespace(str, endIdx);
+		if (start == str.length() || str.charAt(start) == '>') {
 			return endIdx;
 		}
-		if (!strTrm.startsWith("<")) {
+		if (str.charAt(start) != '<') {
 			throw new ShellException(EXP_SYNTAX);
 		}
-
-		int newEndIdx = endIdx;
-		Pattern inputRedirP = Pattern.compile("[\\s]*<[\\s]*(([^\\n\"`'<>]*))[\\s]");
-		Matcher inputRedirM;
-		String inputRedirS = "";
+		int fileEnd = scanRedirFile(str, start + 1);
+		// the file name has to be followed by whitespace
+		int newEndIdx = fileEnd < str.length() ? fileEnd : fileEnd - 1;
+		while (newEndIdx > start && !isSpace(str.charAt(newEndIdx))) {
+			newEndIdx--;
+		}
+		if (newEndIdx == start) {
+			return endIdx;
+		}
 		int cmdVectorIndex = cmdVector.size() - 2;
-
-		boolean singleFlag = true;
-		while (!substring.trim().isEmpty()) {
-			inputRedirM = inputRedirP.matcher(substring);
-			inputRedirS = "";
-			if (inputRedirM.find()) {
-				if (!cmdVector.get(cmdVectorIndex).isEmpty()) {
-					throw new ShellException(EXP_SYNTAX);
-				}
-				inputRedirS = inputRedirM.group(1);
-				String extractedInput = inputRedirS.replace(String.valueOf((char) 160), " ").trim();
-				if (extractedInput.contains("*")) {
-					String[] globResult = processSingleGlob(extractedInput);
-					if (globResult.length == 0) {
-						throw new ShellException(EXP_GLOB_NONE);
-					} else if (globResult.length > 1) {
-						throw new ShellException(EXP_GLOB_MULTI);
-					} else {
-						extractedInput = globResult[0];
-					}
-				}
-
-				cmdVector.set(cmdVectorIndex, extractedInput);
-				if (singleFlag) {
-					singleFlag = false;
-				} else {
-					throw new ShellException(EXP_SYNTAX);
-				}
-				newEndIdx = newEndIdx + inputRedirM.end() - 1;
-			} else {
-				break;
-			}
-			substring = str.substring(newEndIdx);
+		if (!cmdVector.get(cmdVectorIndex).isEmpty()) {
+			throw new ShellException(EXP_SYNTAX);
+		}
+		cmdVector.set(cmdVectorIndex, toRedirFile(str, start + 1, newEndIdx));
+		if (str.indexOf('<', newEndIdx) != -1) { // only one input redirection
+			throw new ShellException(EXP_SYNTAX);
 		}
 		return newEndIdx;
 	}
@@ -330,49 +434,71 @@ public class CallCommand implements Command {
 	 *             invalid syntax is encountered..
 	 */
 	public int extractOutputRedir(String str, Vector<String> cmdVector, int endIdx) throws ShellException {
-		String substring = str.substring(endIdx);
-		String strTrm = substring.trim();
-		if (strTrm.isEmpty()) {
+		int start = skipWhitespace(str, endIdx);
+		if (start == str.length()) {
 			return endIdx;
 		}
-		if (!strTrm.startsWith(">")) {
+		if (str.charAt(start) != '>') {
 			throw new ShellException(EXP_SYNTAX);
 		}
-
-		int newEndIdx = endIdx;
-		Pattern inputRedirP = Pattern.compile("[\\s]*>[\\s]*(([^\\n\"`'<>]*))[\\s]*");
-		Matcher inputRedirM;
-		String inputRedirS = "";
+		int fileEnd = scanRedirFile(str, start + 1);
 		int cmdVectorIdx = cmdVector.size() - 1;
-		while (!substring.trim().isEmpty()) {
-
-			inputRedirM = inputRedirP.matcher(substring);
-			inputRedirS = "";
-			if (inputRedirM.find()) {
-				if (!cmdVector.get(cmdVectorIdx).isEmpty()) {
-					throw new ShellException(EXP_SYNTAX);
-				}
-				inputRedirS = inputRedirM.group(1);
-				String extractedOutput = inputRedirS.replace(String.valueOf((char) 160), " ").trim();
-				if (extractedOutput.contains("*")) {
-					String[] globResult = processSingleGlob(extractedOutput);
-					if (globResult.length == 0) {
-						throw new ShellException(EXP_GLOB_NONE);
-					} else if (globResult.length > 1) {
-						throw new ShellException(EXP_GLOB_MULTI);
-					} else {
-						extractedOutput = globResult[0];
-					}
-				}
+		if (!cmdVector.get(cmdVectorIdx).isEmpty()) {
+			throw new ShellException(EXP_SYNTAX);
+		}
+		cmdVector.set(cmdVectorIdx, toRedirFile(str, start + 1, fileEnd));
+		int newEndIdx = skipWhitespace(str, fileEnd) - 1;
+		if (str.indexOf('>', newEndIdx) != -1) { // only one output redirection
+			throw new ShellException(EXP_SYNTAX);
+		}
+		return newEndIdx;
+	}
 
-				cmdVector.set(cmdVectorIdx, extractedOutput);
-				newEndIdx = newEndIdx + inputRedirM.end() - 1;
+	/**
+	 * Expands the unquoted arguments containing wildcards that were marked
+	 * while parsing. The parsed arguments are left unchanged.
+	 * 
+	 * @return the arguments to run the application with
+	 * @throws ShellException
+	 *             If the file system cannot be walked.
+	 */
+	private String[] expandGlobArgs() throws ShellException {
+		if (globTokens.isEmpty()) {
+			return argsArray;
+		}
+		List<String> tempList = new ArrayList<>();
+		for (int i = 0; i < argsArray.length; i++) {
+			// token 0 of the parsed command line is the application name
+			if (globTokens.get(i + 1)) {
+				tempList.addAll(Arrays.asList(processSingleGlob(argsArray[i])));
 			} else {
-				break;
+				tempList.add(argsArray[i]);
 			}
-			substring = str.substring(newEndIdx);
 		}
-		return newEndIdx;
+		return tempList.toArray(new String[tempList.size()]);
+	}
+
+	/**
+	 * Resolves a redirection file name containing wildcards to the single
+	 * file it matches.
+	 * 
+	 * @param fileName
+	 *            file name given for the redirection
+	 * @return the file name to open
+	 * @throws ShellException
+	 *             If the wildcards match no file or more than one file.
+	 */
+	private String resolveRedirGlob(String fileName) throws ShellException {
+		if (!fileName.contains("*")) {
+			return fileName;
+		}
+		String[] globResult = processSingleGlob(fileName);
+		if (globResult.length == 0) {
+			throw new ShellException(EXP_GLOB_NONE);
+		} else if (globResult.length > 1) {
+			throw new ShellException(EXP_GLOB_MULTI);
+		}
+		return globResult[0];
 	}
 
 	/**
@@ -424,16 +550,16 @@ public class CallCommand implements Command {
 			Path parentPath = beforeSeperator == -1 ? Paths.get("") : Paths.get(arg.substring(0, beforeSeperator));
 
 			String pattern = arg.substring(beforeSeperator + 1);
-			GlobFinder finder = new GlobFinder(pattern, parentPath.toAbsolutePath().toString());
+			GlobFinder finder = new GlobFinder(pattern, parentPath.toAbsolutePath().toString(),
+					ShellImpl.getDirectoryCache());
 
+			List<String> results;
 			try {
-				Files.walkFileTree(parentPath.toAbsolutePath(), finder);
+				results = finder.find();
 			} catch (IOException e) {
 				throw new ShellException(e);
 			}
 
-			List<String> results = finder.getResults();
-
 			if (results.isEmpty()) {
 				tempList.add(arg);
 			} else {
@@ -449,12 +575,22 @@ public class CallCommand implements Command {
 	}
 
 	/**
-	 * Terminates current execution of the command (unused for now)
+	 * Terminates current execution of the command. Threads running the
+	 * application are interrupted and redirection files opened for them are
+	 * closed, so that an application blocked on I/O returns promptly.
 	 */
 	@Override
 	public void terminate() {
-		// TODO Auto-generated method stub
-
+		for (Thread thread : runningThreads) {
+			thread.interrupt();
+		}
+		for (Closeable stream : openStreams) {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				// the application fails on its next read or write instead
+			}
+		}
 	}
 
 }
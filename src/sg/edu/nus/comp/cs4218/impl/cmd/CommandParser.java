@@ -0,0 +1,160 @@
+package sg.edu.nus.comp.cs4218.impl.cmd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sg.edu.nus.comp.cs4218.Command;
+import sg.edu.nus.comp.cs4218.exception.ShellException;
+
+/**
+ * Recursive-descent parser that turns a command line into a tree of commands
+ * in a single left-to-right scan.
+ *
+ * <p>
+ * <b>Grammar:</b>
+ * <code>&lt;Sequence&gt; ::= &lt;Pipe&gt; (";" &lt;Pipe&gt;)*</code>,
+ * <code>&lt;Pipe&gt; ::= &lt;Call&gt; ("|" &lt;Call&gt;)*</code>
+ * </p>
+ *
+ * Semicolons and pipe operators inside single, double or back quotes are part
+ * of the call command they appear in. A sequence or pipe with a single member
+ * is represented by that member alone.
+ */
+public final class CommandParser {
+	private static final char SEMICOLON = ';';
+	private static final char PIPE = '|';
+	private static final String OPERATORS = ";|";
+
+	private final String cmdline;
+	private int pos;
+
+	private CommandParser(String cmdline) {
+		this.cmdline = cmdline;
+	}
+
+	/**
+	 * Parses the command line into a sequence, pipe or call command.
+	 *
+	 * @param cmdline
+	 *            The string to parse into a command
+	 * @return parent command
+	 * @throws ShellException
+	 *             If the command line or any of its call commands is invalid.
+	 */
+	public static Command parse(String cmdline) throws ShellException {
+		CommandParser parser = new CommandParser(cmdline);
+		return parser.parseSequence();
+	}
+
+	/**
+	 * Splits the command line at every semicolon or pipe operator outside of
+	 * quotes.
+	 *
+	 * @param cmdline
+	 *            The string to split
+	 * @param separator
+	 *            Either ';' or '|'
+	 * @return the trimmed parts of the command line, including empty ones
+	 */
+	static List<String> split(String cmdline, char separator) {
+		CommandParser parser = new CommandParser(cmdline);
+		List<String> parts = new ArrayList<String>();
+		do {
+			int start = parser.pos;
+			parser.skipTo(String.valueOf(separator));
+			parts.add(cmdline.substring(start, parser.pos).trim());
+		} while (parser.accept(separator));
+		return parts;
+	}
+
+	private Command parseSequence() throws ShellException {
+		List<Command> commands = new ArrayList<Command>();
+		boolean missingArg = false;
+		do {
+			int start = pos;
+			commands.add(parsePipe());
+			missingArg |= cmdline.substring(start, pos).trim().isEmpty();
+		} while (accept(SEMICOLON));
+		if (commands.size() == 1) {
+			return commands.get(0);
+		}
+		if (missingArg) {
+			throw new ShellException(SequenceCommand.MISSING_ARG);
+		}
+		return new SequenceCommand(cmdline, commands);
+	}
+
+	private Command parsePipe() throws ShellException {
+		int start = pos;
+		List<CallCommand> commands = new ArrayList<CallCommand>();
+		do {
+			commands.add(parseCall());
+		} while (accept(PIPE));
+		if (commands.size() == 1) {
+			return commands.get(0);
+		}
+		return new PipeCommand(cmdline.substring(start, pos).trim(), commands);
+	}
+
+	private CallCommand parseCall() throws ShellException {
+		int start = pos;
+		skipTo(OPERATORS);
+		CallCommand command = new CallCommand(cmdline.substring(start, pos));
+		command.parse();
+		return command;
+	}
+
+	private boolean accept(char expected) {
+		if (pos < cmdline.length() && cmdline.charAt(pos) == expected) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Advances to the next unquoted occurrence of any of the separators, or to
+	 * the end of the line.
+	 */
+	private void skipTo(String separators) {
+		while (pos < cmdline.length()) {
+			char chr = cmdline.charAt(pos);
+			if (separators.indexOf(chr) != -1) {
+				return;
+			}
+			switch (chr) {
+			case '\'':
+			case '`':
+				pos = closingQuote(pos, chr);
+				break;
+			case '"':
+				pos = closingDoubleQuote(pos);
+				break;
+			default:
+				pos++;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the index after the quote closing the one at the given index, or
+	 * the end of the line if it is never closed.
+	 */
+	private int closingQuote(int open, char quote) {
+		int close = cmdline.indexOf(quote, open + 1);
+		return close == -1 ? cmdline.length() : close + 1;
+	}
+
+	/**
+	 * Returns the index after the double quote closing the one at the given
+	 * index. Back quoted sections inside may contain double quotes.
+	 */
+	private int closingDoubleQuote(int open) {
+		int idx = open + 1;
+		while (idx < cmdline.length() && cmdline.charAt(idx) != '"') {
+			idx = cmdline.charAt(idx) == '`' ? closingQuote(idx, '`') : idx + 1;
+		}
+		return idx < cmdline.length() ? idx + 1 : idx;
+	}
+}
@@ -0,0 +1,269 @@
+package sg.edu.nus.comp.cs4218.impl.cmd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * A bounded in-memory byte channel that connects two stages of a pipe command.
+ * The upstream stage writes to the output end while the downstream stage reads
+ * from the input end. Writers block while the buffer is full and readers block
+ * while it is empty, so the memory used by a pipe never exceeds its capacity no
+ * matter how much data flows through it.
+ * 
+ * Once the reader closes its end, any further write fails with an
+ * {@link IOException}, the in-process equivalent of a broken pipe, so that the
+ * upstream stage stops producing output nobody will read.
+ */
+public class PipeChannel {
+	public static final int DEFAULT_CAPACITY = 64 * 1024;
+	public static final String EXP_CLOSED = "Pipe closed";
+	public static final String EXP_BROKEN_PIPE = "Broken pipe";
+	public static final String EXP_INTERRUPTED = "Interrupted while waiting on pipe";
+
+	private final byte[] buffer;
+	private final InputStream inputEnd;
+	private final OutputStream outputEnd;
+	private int readPos;
+	private int count;
+	private boolean writerClosed;
+	private boolean readerClosed;
+	private boolean readRejected;
+	private boolean writeRejected;
+
+	public PipeChannel() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public PipeChannel(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		this.buffer = new byte[capacity];
+		this.inputEnd = new ChannelInputStream();
+		this.outputEnd = new ChannelOutputStream();
+	}
+
+	/**
+	 * Returns the end of the channel that the downstream stage reads from.
+	 */
+	public InputStream getInputStream() {
+		return inputEnd;
+	}
+
+	/**
+	 * Returns the end of the channel that the upstream stage writes to.
+	 */
+	public OutputStream getOutputStream() {
+		return outputEnd;
+	}
+
+	/**
+	 * Closes the write end. Buffered data can still be read, after which the
+	 * reader sees end of stream.
+	 */
+	public synchronized void closeWriter() {
+		writerClosed = true;
+		notifyAll();
+	}
+
+	/**
+	 * Closes the read end and discards any buffered data.
+	 */
+	public synchronized void closeReader() {
+		readerClosed = true;
+		count = 0;
+		notifyAll();
+	}
+
+	/**
+	 * Returns true if the downstream stage has stopped reading.
+	 */
+	public synchronized boolean isReaderClosed() {
+		return readerClosed;
+	}
+
+	/**
+	 * Returns true if a read has failed because the read end was closed, i.e.
+	 * the downstream stage was cut off while reading.
+	 */
+	public synchronized boolean isReadRejected() {
+		return readRejected;
+	}
+
+	/**
+	 * Returns true if a write has failed because the read end was closed, i.e.
+	 * the upstream stage was cut off by a broken pipe.
+	 */
+	public synchronized boolean isWriteRejected() {
+		return writeRejected;
+	}
+
+	synchronized int read(byte[] dest, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		while (count == 0) {
+			if (readerClosed) {
+				readRejected = true;
+				throw new IOException(EXP_CLOSED);
+			}
+			if (writerClosed) {
+				return -1;
+			}
+			awaitChange(false);
+		}
+		boolean wasFull = count == buffer.length;
+		int toRead = Math.min(len, count);
+		int firstPart = Math.min(toRead, buffer.length - readPos);
+		System.arraycopy(buffer, readPos, dest, off, firstPart);
+		System.arraycopy(buffer, 0, dest, off + firstPart, toRead - firstPart);
+		readPos = (readPos + toRead) % buffer.length;
+		count -= toRead;
+		if (wasFull) {
+			notifyAll();
+		}
+		return toRead;
+	}
+
+	synchronized void write(byte[] src, int off, int len) throws IOException {
+		int offset = off;
+		int remaining = len;
+		while (remaining > 0) {
+			if (writerClosed) {
+				throw new IOException(EXP_CLOSED);
+			}
+			if (readerClosed) {
+				writeRejected = true;
+				throw new IOException(EXP_BROKEN_PIPE);
+			}
+			if (count == buffer.length) {
+				awaitChange(true);
+				continue;
+			}
+			boolean wasEmpty = count == 0;
+			int writePos = (readPos + count) % buffer.length;
+			int toWrite = Math.min(remaining, buffer.length - count);
+			int firstPart = Math.min(toWrite, buffer.length - writePos);
+			System.arraycopy(src, offset, buffer, writePos, firstPart);
+			System.arraycopy(src, offset + firstPart, buffer, 0, toWrite - firstPart);
+			count += toWrite;
+			offset += toWrite;
+			remaining -= toWrite;
+			if (wasEmpty) {
+				notifyAll();
+			}
+		}
+	}
+
+	synchronized int readByte() throws IOException {
+		while (count == 0) {
+			if (readerClosed) {
+				readRejected = true;
+				throw new IOException(EXP_CLOSED);
+			}
+			if (writerClosed) {
+				return -1;
+			}
+			awaitChange(false);
+		}
+		boolean wasFull = count == buffer.length;
+		int value = buffer[readPos] & 0xFF;
+		readPos = (readPos + 1) % buffer.length;
+		count--;
+		if (wasFull) {
+			notifyAll();
+		}
+		return value;
+	}
+
+	synchronized void writeByte(int value) throws IOException {
+		while (true) {
+			if (writerClosed) {
+				throw new IOException(EXP_CLOSED);
+			}
+			if (readerClosed) {
+				writeRejected = true;
+				throw new IOException(EXP_BROKEN_PIPE);
+			}
+			if (count < buffer.length) {
+				break;
+			}
+			awaitChange(true);
+		}
+		boolean wasEmpty = count == 0;
+		buffer[(readPos + count) % buffer.length] = (byte) value;
+		count++;
+		if (wasEmpty) {
+			notifyAll();
+		}
+	}
+
+	synchronized int available() {
+		return count;
+	}
+
+	private void awaitChange(boolean writing) throws IOException {
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			if (readerClosed) {
+				// closed and interrupted together when a stage is cancelled
+				if (writing) {
+					writeRejected = true;
+					throw new IOException(EXP_BROKEN_PIPE);
+				}
+				readRejected = true;
+				throw new IOException(EXP_CLOSED);
+			}
+			throw new InterruptedIOException(EXP_INTERRUPTED);
+		}
+	}
+
+	private class ChannelInputStream extends InputStream {
+		@Override
+		public int read() throws IOException {
+			return readByte();
+		}
+
+		@Override
+		public int read(byte[] dest, int off, int len) throws IOException {
+			if (off < 0 || len < 0 || len > dest.length - off) {
+				throw new IndexOutOfBoundsException();
+			}
+			return PipeChannel.this.read(dest, off, len);
+		}
+
+		@Override
+		public int available() {
+			return PipeChannel.this.available();
+		}
+
+		@Override
+		public void close() {
+			closeReader();
+		}
+	}
+
+	private class ChannelOutputStream extends OutputStream {
+		@Override
+		public void write(int value) throws IOException {
+			writeByte(value);
+		}
+
+		@Override
+		public void write(byte[] src, int off, int len) throws IOException {
+			if (off < 0 || len < 0 || len > src.length - off) {
+				throw new IndexOutOfBoundsException();
+			}
+			PipeChannel.this.write(src, off, len);
+		}
+
+		@Override
+		public void close() {
+			closeWriter();
+		}
+	}
+}
@@ -1,104 +1,225 @@
 package sg.edu.nus.comp.cs4218.impl.cmd;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import sg.edu.nus.comp.cs4218.Command;
 import sg.edu.nus.comp.cs4218.exception.AbstractApplicationException;
 import sg.edu.nus.comp.cs4218.exception.PipeCommandException;
 import sg.edu.nus.comp.cs4218.exception.ShellException;
-import sg.edu.nus.comp.cs4218.impl.ShellImpl;
 
 public class PipeCommand implements Command {
 	private static final char PIPE = '|';
-	private static final int ZERO = 0;
+	private static final String THREAD_NAME = "pipe-stage-";
+	private static final String EXP_CALL_FAILED = "exception detected for one of the call commands";
+	private static final String EXP_INTERRUPTED = "interrupted while waiting for the call commands";
 	private final String cmdline;
-	private final ArrayList<String> argsList;
-	private final ArrayList<CallCommand> cmdList = new ArrayList<CallCommand>();
+	private final List<CallCommand> cmdList;
+	private final Set<Pipeline> activePipelines = Collections
+			.newSetFromMap(new ConcurrentHashMap<Pipeline, Boolean>());
 
 	public PipeCommand(String cmdLine) {
-		this.argsList = new ArrayList<String>();
 		this.cmdline = cmdLine;
-		separateIntoIndividualCommands(cmdLine);
+		this.cmdList = new ArrayList<CallCommand>();
 	}
 
-	/**
-	 * this method uses the pipe as a delimiter and breaks a line of string into
-	 * their various call commands
-	 * 
-	 * @param cmdLine
-	 *            a string of commands
-	 */
-	private void separateIntoIndividualCommands(String cmdLine) {
-		StringBuilder stringBuilder = new StringBuilder("");
-		for (int i = 0; i < cmdLine.length(); i++) {
-			if (cmdLine.charAt(i) == PIPE) {
-				this.argsList.add(stringBuilder.toString().trim());
-				stringBuilder.setLength(ZERO);
-			} else {
-				stringBuilder.append(cmdLine.charAt(i));
-			}
-			if (i == cmdline.length() - 1) {
-				this.argsList.add(stringBuilder.toString());
-			}
-		}
+	PipeCommand(String cmdLine, List<CallCommand> cmdList) {
+		this.cmdline = cmdLine;
+		this.cmdList = cmdList;
 	}
 
 	/**
 	 * Evaluates command using data provided through stdin stream. Write result
 	 * to stdout stream.
+	 * 
+	 * Every call command runs on its own thread. Adjacent commands are
+	 * connected by a bounded {@link PipeChannel}, so the stages work on the
+	 * data concurrently and only a channel's worth of output is held in memory
+	 * between any two of them. When a command returns, the commands before it
+	 * can no longer deliver their output and are cancelled, like a process
+	 * killed by SIGPIPE; exceptions caused by such a cancellation are ignored.
+	 * 
+	 * @throws PipeCommandException
+	 *             If any of the call commands fails.
 	 */
 	@Override
 	public void evaluate(InputStream stdin, OutputStream stdout) throws AbstractApplicationException, ShellException {
-		ByteArrayOutputStream outgoingPipe = new ByteArrayOutputStream();
-		for (int i = 0; i < this.cmdList.size(); i++) {
-			if (i == 0) {
-				try {
-					cmdList.get(i).evaluate(stdin, outgoingPipe);
-				} catch (AbstractApplicationException | ShellException e) {
-					throw new PipeCommandException("exception detected for one of the call commands", e);
-				}
-			} else if (i < this.cmdList.size() - 1) {
-				InputStream incomingPipe = new ByteArrayInputStream(outgoingPipe.toByteArray());
-				outgoingPipe.reset();
-				try {
-					cmdList.get(i).evaluate(incomingPipe, outgoingPipe);
-				} catch (AbstractApplicationException | ShellException e) {
-					throw new PipeCommandException("exception detected for one of the call commands", e);
-				}
-
-			} else {
-				InputStream incomingPipe = new ByteArrayInputStream(outgoingPipe.toByteArray());
-				try {
-					cmdList.get(i).evaluate(incomingPipe, stdout);
-				} catch (AbstractApplicationException | ShellException e) {
-					throw new PipeCommandException("exception detected for one of the call commands", e);
-				}
-
-			}
+		Pipeline pipeline = new Pipeline(this.cmdList, stdin, stdout);
+		activePipelines.add(pipeline);
+		try {
+			pipeline.run();
+		} finally {
+			activePipelines.remove(pipeline);
 		}
 	}
 
 	/**
-	 * Terminates current execution of the command (unused for now)
+	 * Terminates current execution of the command. All running call commands
+	 * are cancelled and the evaluation returns once they have stopped.
 	 */
 	@Override
 	public void terminate() {
-		// unused
+		for (Pipeline pipeline : activePipelines) {
+			pipeline.terminate();
+		}
+		for (CallCommand command : cmdList) {
+			command.terminate();
+		}
 	}
 
+	/**
+	 * Splits the command line at every pipe operator outside of quotes and
+	 * parses each part as a call command.
+	 * 
+	 * @throws ShellException
+	 *             If there is no pipe operator or a part cannot be parsed.
+	 */
 	@Override
 	public void parse() throws ShellException {
-		if (this.argsList.isEmpty() || this.argsList.get(ZERO).equals(this.cmdline)) {
+		List<String> parts = CommandParser.split(cmdline, PIPE);
+		if (parts.size() < 2) {
 			throw new ShellException("Invalid syntax encountered");
 		}
 
-		for (int i = 0; i < this.argsList.size(); i++) {
-			Command command = ShellImpl.parse(this.argsList.get(i).trim());
-			cmdList.add((CallCommand) command);
+		cmdList.clear();
+		for (String part : parts) {
+			CallCommand command = new CallCommand(part);
+			command.parse();
+			cmdList.add(command);
+		}
+	}
+
+	/**
+	 * A single evaluation of the pipe command: the threads running the call
+	 * commands and the channels connecting them.
+	 */
+	private static class Pipeline {
+		private final PipeChannel[] channels;
+		private final PipeStage[] stages;
+		private final Thread[] threads;
+		private volatile boolean terminated;
+
+		Pipeline(List<CallCommand> commands, InputStream stdin, OutputStream stdout) {
+			int numStages = commands.size();
+			channels = new PipeChannel[numStages - 1];
+			for (int i = 0; i < channels.length; i++) {
+				channels[i] = new PipeChannel();
+			}
+			stages = new PipeStage[numStages];
+			threads = new Thread[numStages];
+			for (int i = 0; i < numStages; i++) {
+				PipeChannel upstream = i == 0 ? null : channels[i - 1];
+				PipeChannel downstream = i == numStages - 1 ? null : channels[i];
+				InputStream input = upstream == null ? stdin : upstream.getInputStream();
+				OutputStream output = downstream == null ? stdout : downstream.getOutputStream();
+				stages[i] = new PipeStage(this, i, commands.get(i), input, output, upstream, downstream);
+				threads[i] = new Thread(stages[i], THREAD_NAME + i);
+				threads[i].setDaemon(true);
+			}
+		}
+
+		void run() throws PipeCommandException {
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			try {
+				for (Thread thread : threads) {
+					thread.join();
+				}
+			} catch (InterruptedException e) {
+				terminate();
+				Thread.currentThread().interrupt();
+				throw new PipeCommandException(EXP_INTERRUPTED, e);
+			}
+			if (terminated) {
+				return;
+			}
+			for (PipeStage stage : stages) {
+				if (stage.failure != null && !stage.brokenPipe) {
+					throw new PipeCommandException(EXP_CALL_FAILED, stage.failure);
+				}
+			}
+		}
+
+		/**
+		 * Called once the call command at the given index has returned. Output
+		 * of the commands before it can no longer reach the end of the pipe,
+		 * so they are cancelled.
+		 */
+		void stageFinished(int index) {
+			for (int i = index - 1; i >= 0; i--) {
+				cancel(i);
+			}
+		}
+
+		void terminate() {
+			terminated = true;
+			for (int i = 0; i < stages.length; i++) {
+				cancel(i);
+			}
+		}
+
+		private void cancel(int index) {
+			if (index < channels.length) {
+				channels[index].closeReader();
+			}
+			if (index > 0) {
+				channels[index - 1].closeReader();
+			}
+			threads[index].interrupt();
+		}
+	}
+
+	/**
+	 * Runs one call command of the pipe and records the exception it throws,
+	 * if any. The channels connected to the stage are closed once the command
+	 * returns so that neighbouring stages observe end of stream and do not
+	 * block forever.
+	 */
+	private static class PipeStage implements Runnable {
+		private final Pipeline pipeline;
+		private final int index;
+		private final CallCommand command;
+		private final InputStream input;
+		private final OutputStream output;
+		private final PipeChannel upstream;
+		private final PipeChannel downstream;
+		private volatile Exception failure;
+		private volatile boolean brokenPipe;
+
+		PipeStage(Pipeline pipeline, int index, CallCommand command, InputStream input, OutputStream output,
+				PipeChannel upstream, PipeChannel downstream) {
+			this.pipeline = pipeline;
+			this.index = index;
+			this.command = command;
+			this.input = input;
+			this.output = output;
+			this.upstream = upstream;
+			this.downstream = downstream;
+		}
+
+		@Override
+		public void run() {
+			try {
+				command.evaluate(input, output);
+			} catch (AbstractApplicationException | ShellException | RuntimeException e) {
+				brokenPipe = (downstream != null && downstream.isWriteRejected())
+						|| (upstream != null && upstream.isReadRejected());
+				failure = e;
+			} finally {
+				if (upstream != null) {
+					upstream.closeReader();
+				}
+				if (downstream != null) {
+					downstream.closeWriter();
+				}
+				pipeline.stageFinished(index);
+			}
 		}
 	}
 }
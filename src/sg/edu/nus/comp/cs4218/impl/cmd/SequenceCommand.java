@@ -2,25 +2,31 @@ package sg.edu.nus.comp.cs4218.impl.cmd;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import sg.edu.nus.comp.cs4218.Command;
 import sg.edu.nus.comp.cs4218.exception.AbstractApplicationException;
 import sg.edu.nus.comp.cs4218.exception.ShellException;
-import sg.edu.nus.comp.cs4218.impl.ShellImpl;
 
 public class SequenceCommand implements Command {
 	public static final String EXP_SYNTAX = "Invalid syntax encountered.";
 	public static final String MISSING_ARG = "Missing arg for pipe command.";
+	private static final char SEMICOLON = ';';
 
-	static final String SEQUENCE_DOUBLE = ";(?=([^\\\"]*\\\"[^\\\"]*\\\")*[^\\\"]*$)";
-	static final String SEQUENCE_SINGLE = ";(?=([^']*'[^']*')*[^']*$)";
-
-	Command firstCommand, secondCommand;
+	final List<Command> commands;
+	private volatile boolean terminated;
 
 	String cmdline;
 
 	public SequenceCommand(String cmdline) {
 		this.cmdline = cmdline.trim();
+		this.commands = new ArrayList<Command>();
+	}
+
+	SequenceCommand(String cmdline, List<Command> commands) {
+		this.cmdline = cmdline.trim();
+		this.commands = commands;
 	}
 
 	/**
@@ -29,49 +35,49 @@ public class SequenceCommand implements Command {
 	 */
 	@Override
 	public void evaluate(InputStream stdin, OutputStream stdout) throws AbstractApplicationException, ShellException {
-		firstCommand.evaluate(stdin, stdout);
-		secondCommand.evaluate(stdin, stdout);
+		terminated = false;
+		for (Command command : commands) {
+			if (terminated) {
+				return;
+			}
+			command.evaluate(stdin, stdout);
+		}
 	}
 
 	/**
-	 * Finds the first semicolon and parses both sides of the command line.
+	 * Splits the command line at every semicolon outside of quotes and parses
+	 * each part.
 	 *
 	 * @throws ShellException
+	 *             If there is no semicolon, a part is empty or a part cannot
+	 *             be parsed.
 	 */
 	@Override
 	public void parse() throws ShellException {
-		String[] doubleCommands = cmdline.trim().split(SEQUENCE_DOUBLE, 2);
-		String[] singleCommands = cmdline.trim().split(SEQUENCE_SINGLE, 2);
-		String[] validCommands;
-
-		/* Setup boolean parameters and conditions for parsing */
-		boolean dblNotFound = doubleCommands.length < 2;
-		boolean sinNotFound = singleCommands.length < 2;
-		boolean dblArgMissing = doubleCommands.length == 2
-				&& (doubleCommands[1].isEmpty() || doubleCommands[0].isEmpty());
-		boolean sinArgMissing = singleCommands.length == 2
-				&& (singleCommands[1].isEmpty() || singleCommands[0].isEmpty());
-
-		if (dblNotFound || sinNotFound) {
+		List<String> parts = CommandParser.split(cmdline, SEMICOLON);
+		if (parts.size() < 2) {
 			throw new ShellException(EXP_SYNTAX);
-		} else if (dblArgMissing && sinArgMissing) {
-			throw new ShellException(MISSING_ARG);
-		} else if (dblArgMissing || sinArgMissing) {
-			boolean singleValid = singleCommands[0].length() > doubleCommands[0].length();
-			validCommands = singleValid ? singleCommands : doubleCommands;
-		} else {
-			validCommands = singleCommands;
 		}
-
-		firstCommand = ShellImpl.parse(validCommands[0]);
-		secondCommand = ShellImpl.parse(validCommands[1]);
+		for (String part : parts) {
+			if (part.isEmpty()) {
+				throw new ShellException(MISSING_ARG);
+			}
+		}
+		commands.clear();
+		for (String part : parts) {
+			commands.add(CommandParser.parse(part));
+		}
 	}
 
 	/**
-	 * Terminates current execution of the command (unused for now)
+	 * Terminates current execution of the command. The running command is
+	 * terminated and the remaining ones are not started.
 	 */
 	@Override
 	public void terminate() {
-		// TODO Auto-generated method stub
+		terminated = true;
+		for (Command command : commands) {
+			command.terminate();
+		}
 	}
 }
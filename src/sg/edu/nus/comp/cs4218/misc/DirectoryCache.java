@@ -0,0 +1,143 @@
+package sg.edu.nus.comp.cs4218.misc;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Caches the entries of directories by absolute path so that expanding the
+ * same globs again costs one stat call per directory instead of a listing.
+ *
+ * A cached listing is used only while the modification time of the directory
+ * is unchanged. Since file systems store that time with limited precision, a
+ * listing taken within {@link #MTIME_GRANULARITY_MS} of the last modification
+ * is not cached, as a later change could leave the time as it was. Files the
+ * shell itself creates are reported through {@link #invalidate(Path)}.
+ */
+public class DirectoryCache {
+	public static final long MTIME_GRANULARITY_MS = 2000;
+
+	private final LruCache<String, Listing> listings;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param maxDirectories
+	 *            maximum number of directory listings kept
+	 */
+	public DirectoryCache(int maxDirectories) {
+		this.listings = new LruCache<String, Listing>(maxDirectories);
+	}
+
+	/**
+	 * Returns the entries of a directory, from the cache if the directory has
+	 * not been modified since it was listed.
+	 *
+	 * @param dir
+	 *            directory to list
+	 * @return the entries of the directory in no particular order
+	 * @throws IOException
+	 *             If the directory cannot be read
+	 */
+	public List<Entry> list(Path dir) throws IOException {
+		String key = dir.toAbsolutePath().toString();
+		FileTime modified = Files.getLastModifiedTime(dir);
+		Listing listing = listings.get(key);
+		if (listing != null && listing.modified.equals(modified)) {
+			return listing.entries;
+		}
+		long listedAt = System.currentTimeMillis();
+		List<Entry> entries = readDirectory(dir);
+		if (listedAt - modified.toMillis() >= MTIME_GRANULARITY_MS) {
+			listings.put(key, new Listing(modified, entries));
+		} else {
+			listings.remove(key);
+		}
+		return entries;
+	}
+
+	/**
+	 * Drops the cached listing of a directory whose entries have changed.
+	 *
+	 * @param dir
+	 *            directory that changed
+	 */
+	public void invalidate(Path dir) {
+		listings.remove(dir.toAbsolutePath().toString());
+	}
+
+	/**
+	 * Drops all cached listings.
+	 */
+	public void clear() {
+		listings.clear();
+	}
+
+	/**
+	 * Lists a directory without caching it.
+	 *
+	 * @param dir
+	 *            directory to list
+	 * @return the entries of the directory in no particular order
+	 * @throws IOException
+	 *             If the directory cannot be read
+	 */
+	public static List<Entry> readDirectory(Path dir) throws IOException {
+		List<Entry> entries = new ArrayList<Entry>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (Path path : stream) {
+				entries.add(new Entry(path));
+			}
+		}
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * An entry of a directory. Whether it is a directory itself is only looked
+	 * up when first asked, so entries that are never descended into cost no
+	 * stat call.
+	 */
+	public static class Entry {
+		private static final int UNKNOWN = 0;
+		private static final int DIRECTORY = 1;
+		private static final int OTHER = 2;
+
+		private final Path path;
+		private volatile int type = UNKNOWN;
+
+		Entry(Path path) {
+			this.path = path;
+		}
+
+		public Path getPath() {
+			return path;
+		}
+
+		/**
+		 * Returns true if the entry is a directory. Symbolic links are not
+		 * followed.
+		 */
+		public boolean isDirectory() {
+			if (type == UNKNOWN) {
+				type = Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) ? DIRECTORY : OTHER;
+			}
+			return type == DIRECTORY;
+		}
+	}
+
+	private static class Listing {
+		private final FileTime modified;
+		private final List<Entry> entries;
+
+		Listing(FileTime modified, List<Entry> entries) {
+			this.modified = modified;
+			this.entries = entries;
+		}
+	}
+}
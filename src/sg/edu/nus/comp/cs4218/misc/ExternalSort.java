@@ -0,0 +1,255 @@
+package sg.edu.nus.comp.cs4218.misc;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import sg.edu.nus.comp.cs4218.exception.SortException;
+
+/**
+ * Sorts any number of lines within a fixed memory budget. Lines are collected
+ * until their estimated size reaches the budget, then the chunk is sorted with
+ * the chosen {@link SortAlgorithm} and spilled to a temporary run file. When
+ * all lines have been added the runs are merged with a priority queue. Input
+ * that fits in the budget is sorted in memory without touching the disk.
+ *
+ * Ties are resolved in favour of the line added first, so the result is the
+ * same as sorting all lines at once with {@link MergeSort}.
+ *
+ * The sorter must be closed once done with, which deletes any run files left
+ * behind when adding or writing lines fails.
+ */
+public class ExternalSort implements AutoCloseable {
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+	public static final int MAX_MERGE_FAN_IN = 128;
+	private static final int LINE_OVERHEAD = 64;
+	private static final String RUN_PREFIX = "sort";
+	private static final String RUN_SUFFIX = ".run";
+	private static final Charset RUN_CHARSET = StandardCharsets.UTF_8;
+
+	private final MergeSort mergeSort;
+	private final SortAlgorithm algorithm;
+	private final boolean numFlag;
+	private final long memoryBudget;
+	private final Path tempDir;
+	private final List<String> chunk = new ArrayList<String>();
+	private final List<Path> runs = new ArrayList<Path>();
+	private long chunkSize;
+
+	/**
+	 * Creates an empty sorter.
+	 *
+	 * @param numFlag
+	 *            true to sort in alphanum order, false for natural order
+	 * @param algorithm
+	 *            algorithm to sort each chunk with
+	 * @param memoryBudget
+	 *            estimated number of bytes of lines to hold in memory before
+	 *            spilling to disk
+	 * @param tempDir
+	 *            directory to create run files in
+	 */
+	public ExternalSort(boolean numFlag, SortAlgorithm algorithm, long memoryBudget, Path tempDir) {
+		this.mergeSort = new MergeSort(numFlag);
+		this.algorithm = algorithm;
+		this.numFlag = numFlag;
+		this.memoryBudget = memoryBudget;
+		this.tempDir = tempDir;
+	}
+
+	/**
+	 * Adds a line to be sorted, spilling the lines held so far to disk if the
+	 * memory budget is exceeded.
+	 *
+	 * @param line
+	 *            line without its terminator
+	 * @throws SortException
+	 *             If the run file cannot be written
+	 */
+	public void add(String line) throws SortException {
+		chunk.add(line);
+		chunkSize += 2L * line.length() + LINE_OVERHEAD;
+		if (chunkSize >= memoryBudget) {
+			spill();
+		}
+	}
+
+	/**
+	 * Returns the number of run files spilled so far.
+	 */
+	public int getRunCount() {
+		return runs.size();
+	}
+
+	/**
+	 * Writes all lines added in sorted order, each followed by the line
+	 * separator, and deletes the run files.
+	 *
+	 * @param stdout
+	 *            stream to write to
+	 * @throws SortException
+	 *             If the runs cannot be read or the output cannot be written
+	 */
+	public void writeTo(OutputStream stdout) throws SortException {
+		try {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(stdout, RUN_CHARSET));
+			if (runs.isEmpty()) {
+				for (String line : sortChunk()) {
+					writer.write(line);
+					writer.write(System.lineSeparator());
+				}
+			} else {
+				if (!chunk.isEmpty()) {
+					spill();
+				}
+				while (runs.size() > MAX_MERGE_FAN_IN) {
+					mergePass();
+				}
+				merge(runs, writer, System.lineSeparator());
+			}
+			writer.flush();
+		} catch (IOException e) {
+			throw new SortException("Could not write to output stream", e);
+		} finally {
+			deleteRuns(runs);
+		}
+	}
+
+	/**
+	 * Discards the lines held and deletes the run files spilled so far.
+	 */
+	@Override
+	public void close() {
+		chunk.clear();
+		chunkSize = 0;
+		deleteRuns(runs);
+		runs.clear();
+	}
+
+	private String[] sortChunk() throws SortException {
+		String[] lines = chunk.toArray(new String[chunk.size()]);
+		chunk.clear();
+		chunkSize = 0;
+		return algorithm.sort(lines, numFlag);
+	}
+
+	private void spill() throws SortException {
+		String[] lines = sortChunk();
+		Path run = createRun();
+		try (Writer writer = Files.newBufferedWriter(run, RUN_CHARSET)) {
+			for (String line : lines) {
+				writer.write(line);
+				writer.write('\n');
+			}
+		} catch (IOException e) {
+			throw new SortException("Could not write temporary file", e);
+		}
+	}
+
+	private Path createRun() throws SortException {
+		try {
+			Path run = Files.createTempFile(tempDir, RUN_PREFIX, RUN_SUFFIX);
+			runs.add(run);
+			return run;
+		} catch (IOException e) {
+			throw new SortException("Could not create temporary file", e);
+		}
+	}
+
+	/**
+	 * Merges consecutive groups of runs so that at most MAX_MERGE_FAN_IN files
+	 * are open at once. Groups keep their position so ties stay in order.
+	 */
+	private void mergePass() throws SortException {
+		List<Path> previous = new ArrayList<Path>(runs);
+		runs.clear();
+		try {
+			for (int start = 0; start < previous.size(); start += MAX_MERGE_FAN_IN) {
+				List<Path> group = previous.subList(start, Math.min(start + MAX_MERGE_FAN_IN, previous.size()));
+				Path run = createRun();
+				try (Writer writer = Files.newBufferedWriter(run, RUN_CHARSET)) {
+					merge(group, writer, "\n");
+				} catch (IOException e) {
+					throw new SortException("Could not write temporary file", e);
+				}
+			}
+		} finally {
+			deleteRuns(previous);
+		}
+	}
+
+	private void merge(List<Path> sources, Writer writer, String separator) throws IOException {
+		PriorityQueue<RunCursor> queue = new PriorityQueue<RunCursor>(sources.size(), new Comparator<RunCursor>() {
+			@Override
+			public int compare(RunCursor cursor1, RunCursor cursor2) {
+				int result = mergeSort.compare(cursor1.key, cursor2.key);
+				return result == 0 ? cursor1.index - cursor2.index : result;
+			}
+		});
+		List<BufferedReader> readers = new ArrayList<BufferedReader>();
+		try {
+			for (int i = 0; i < sources.size(); i++) {
+				BufferedReader reader = Files.newBufferedReader(sources.get(i), RUN_CHARSET);
+				readers.add(reader);
+				RunCursor cursor = new RunCursor(reader, i);
+				if (cursor.advance()) {
+					queue.add(cursor);
+				}
+			}
+			while (!queue.isEmpty()) {
+				RunCursor cursor = queue.poll();
+				writer.write(cursor.key.getLine());
+				writer.write(separator);
+				if (cursor.advance()) {
+					queue.add(cursor);
+				}
+			}
+		} finally {
+			for (BufferedReader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+	private static void deleteRuns(List<Path> toDelete) {
+		for (Path run : toDelete) {
+			try {
+				Files.deleteIfExists(run);
+			} catch (IOException e) {
+				// left for the system to clean up with the temp directory
+			}
+		}
+	}
+
+	/**
+	 * The next unmerged line of a run, parsed once into the key it is merged
+	 * by.
+	 */
+	private static class RunCursor {
+		private final BufferedReader reader;
+		private final int index;
+		private MergeSort.NumKey key;
+
+		RunCursor(BufferedReader reader, int index) {
+			this.reader = reader;
+			this.index = index;
+		}
+
+		boolean advance() throws IOException {
+			String line = reader.readLine();
+			key = line == null ? null : new MergeSort.NumKey(line);
+			return key != null;
+		}
+	}
+}
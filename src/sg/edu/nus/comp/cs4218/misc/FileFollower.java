@@ -0,0 +1,205 @@
+package sg.edu.nus.comp.cs4218.misc;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies data appended to a file to an output stream as it is written, the way
+ * <code>tail -f</code> does. Only the bytes past the last known offset are
+ * read, so the file is never read twice.
+ *
+ * Changes are picked up through a {@link WatchService} on the directory of the
+ * file. Since a watch service may be unsupported, or may itself poll slowly on
+ * some platforms, the file is also checked every {@link #POLL_INTERVAL_MS}
+ * milliseconds whether or not an event arrived.
+ *
+ * A file that shrinks is taken to have been truncated and is read again from
+ * the start. If reopening is enabled, a file that is deleted or replaced, for
+ * example by log rotation, is finished off and the new file at the same path
+ * is followed from its start once it appears.
+ */
+public class FileFollower {
+	public static final long POLL_INTERVAL_MS = 50;
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private final Path filePath;
+	private final boolean reopen;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private FileChannel channel;
+	private Object fileKey;
+	private long offset;
+
+	/**
+	 * Creates a follower for a file that has already been read up to the
+	 * given offset. The follower takes over the channel and closes it when
+	 * done.
+	 *
+	 * @param filePath
+	 *            path of the file being followed
+	 * @param channel
+	 *            open channel to the file
+	 * @param offset
+	 *            number of bytes of the file already output
+	 * @param reopen
+	 *            true to follow the path across rotation instead of the file
+	 *            originally opened
+	 * @throws IOException
+	 *             If the attributes of the file cannot be read
+	 */
+	public FileFollower(Path filePath, FileChannel channel, long offset, boolean reopen) throws IOException {
+		this.filePath = filePath.toAbsolutePath();
+		this.channel = channel;
+		this.offset = offset;
+		this.reopen = reopen;
+		this.fileKey = readFileKey();
+	}
+
+	/**
+	 * Copies appended data to out until the current thread is interrupted.
+	 *
+	 * @param out
+	 *            stream to copy appended data to
+	 * @throws IOException
+	 *             If there is an error reading the file or writing to out
+	 * @throws InterruptedException
+	 *             If the thread is interrupted, which is how following ends
+	 */
+	public void follow(OutputStream out) throws IOException, InterruptedException {
+		WatchService watcher = openWatcher();
+		try {
+			while (true) {
+				copyAppended(out);
+				if (reopen && isReplaced()) {
+					reopen(out);
+				}
+				awaitChange(watcher);
+			}
+		} finally {
+			if (watcher != null) {
+				watcher.close();
+			}
+			if (channel != null) {
+				channel.close();
+			}
+		}
+	}
+
+	private WatchService openWatcher() {
+		WatchService watcher = null;
+		try {
+			watcher = filePath.getFileSystem().newWatchService();
+			filePath.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+			return watcher;
+		} catch (IOException | UnsupportedOperationException e) {
+			// fall back to polling alone
+			closeQuietly(watcher);
+			return null;
+		}
+	}
+
+	private void awaitChange(WatchService watcher) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if (watcher == null) {
+			Thread.sleep(POLL_INTERVAL_MS);
+			return;
+		}
+		WatchKey key = watcher.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+		if (key != null) {
+			key.pollEvents();
+			key.reset();
+		}
+	}
+
+	private void copyAppended(OutputStream out) throws IOException {
+		if (channel == null) {
+			return;
+		}
+		long size = channel.size();
+		if (size < offset) {
+			offset = 0;
+		}
+		if (size == offset) {
+			return;
+		}
+		while (offset < size) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), size - offset));
+			int bytesRead = channel.read(buffer, offset);
+			if (bytesRead <= 0) {
+				break;
+			}
+			out.write(buffer.array(), 0, bytesRead);
+			offset += bytesRead;
+		}
+		out.flush();
+	}
+
+	private boolean isReplaced() throws IOException {
+		if (channel == null) {
+			return Files.exists(filePath);
+		}
+		if (!Files.exists(filePath)) {
+			return true;
+		}
+		Object currentKey = readFileKey();
+		return fileKey != null && currentKey != null && !fileKey.equals(currentKey);
+	}
+
+	/**
+	 * Finishes reading the file being followed, then switches to the file now
+	 * at the path if there is one.
+	 */
+	private void reopen(OutputStream out) throws IOException {
+		if (channel != null) {
+			copyAppended(out);
+			channel.close();
+			channel = null;
+		}
+		offset = 0;
+		try {
+			channel = FileChannel.open(filePath, StandardOpenOption.READ);
+			fileKey = readFileKey();
+		} catch (IOException e) {
+			// not there yet, retried on the next change
+			channel = null;
+		}
+		copyAppended(out);
+	}
+
+	private Object readFileKey() throws IOException {
+		try {
+			return Files.readAttributes(filePath, BasicFileAttributes.class).fileKey();
+		} catch (IOException e) {
+			if (Files.exists(filePath)) {
+				throw e;
+			}
+			return null;
+		}
+	}
+
+	private static void closeQuietly(WatchService watcher) {
+		if (watcher == null) {
+			return;
+		}
+		try {
+			watcher.close();
+		} catch (IOException e) {
+			// nothing more can be done with it
+		}
+	}
+}
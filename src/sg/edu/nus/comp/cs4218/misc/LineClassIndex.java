@@ -0,0 +1,52 @@
+package sg.edu.nus.comp.cs4218.misc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The lines of an input grouped by combination type, i.e. by how many of the
+ * classes lower case, upper case, digit and special their characters fall
+ * into. Every line is classified once, in a single pass, when the index is
+ * built; the lines of a type keep their input order. Build the index once and
+ * keep it to ask for several combination types of the same lines.
+ */
+public final class LineClassIndex {
+	private static final int MAX_TYPE = 4;
+
+	private final List<List<String>> linesByType;
+
+	private LineClassIndex(String... lines) {
+		this.linesByType = new ArrayList<List<String>>();
+		for (int type = 0; type <= MAX_TYPE; type++) {
+			linesByType.add(new ArrayList<String>());
+		}
+		for (String line : lines) {
+			linesByType.get(SortTypeSeparator.combinationType(SortTypeSeparator.classify(line))).add(line);
+		}
+	}
+
+	/**
+	 * Builds the index of the given lines
+	 * 
+	 * @param lines
+	 *            input lines
+	 * @return the index
+	 */
+	public static LineClassIndex of(String... lines) {
+		return new LineClassIndex(lines);
+	}
+
+	/**
+	 * Returns the lines of a combination type
+	 * 
+	 * @param combinationType
+	 *            1 to 3 for lines of that many combinations, any other value
+	 *            for lines of all 4
+	 * @return unmodifiable list of the lines in input order
+	 */
+	public List<String> getLines(int combinationType) {
+		int type = combinationType >= 1 && combinationType < MAX_TYPE ? combinationType : MAX_TYPE;
+		return Collections.unmodifiableList(linesByType.get(type));
+	}
+}
@@ -1,16 +1,37 @@
 package sg.edu.nus.comp.cs4218.misc;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 public class LineComparison {
+	public static final int COL_ZERO = 0;
+	public static final int COL_ONE = 1;
+	public static final int COL_TWO = 2;
 	private static final int ZERO = 0;
-	private static final int COL_ZERO = 0;
-	private static final int COL_ONE = 1;
-	private static final int COL_TWO = 2;
 	private static final String TAB_LINE = "\t";
 	private final ArrayList<String> strList1;
 	private final ArrayList<String> strList2;
 
+	/**
+	 * Receives the rows of a comparison in output order.
+	 */
+	public interface RowHandler {
+		/**
+		 * Called once for every row of the comparison.
+		 * 
+		 * @param column
+		 *            COL_ZERO for a line only in the first input, COL_ONE for a
+		 *            line only in the second input, COL_TWO for a line in both
+		 * @param line
+		 *            the line, without its terminator
+		 * @throws IOException
+		 *             If the row cannot be written
+		 */
+		void handleRow(int column, String line) throws IOException;
+	}
+
 	public LineComparison(ArrayList<String> strList1, ArrayList<String> strList2) {
 		this.strList1 = strList1;
 		this.strList2 = strList2;
@@ -24,69 +45,149 @@ public class LineComparison {
 	 *         index returns, the commallmatches
 	 */
 	public ArrayList<ArrayList<String>> compareLines() {
-		int indexLineFile1 = 0;
-		int indexLineFile2 = 0;
-		ArrayList<ArrayList<String>> mainAl = new ArrayList<ArrayList<String>>();
+		final ArrayList<ArrayList<String>> mainAl = new ArrayList<ArrayList<String>>();
 		mainAl.add(new ArrayList<String>());
 		mainAl.add(new ArrayList<String>());
 		mainAl.add(new ArrayList<String>());
-		while (true) {
-			int result = 0;
-			String lineA = "";
-			String lineB = "";
-			lineA = getLineFromList(this.strList1, indexLineFile1);
-			lineB = getLineFromList(this.strList2, indexLineFile2);
-			if (indexLineFile1 > this.strList1.size() - 1 && indexLineFile2 > this.strList2.size() - 1) {
-				break;
-			} else if (lineA.length() == 0 && lineB.length() != 0) {
-				mainAl.get(COL_ZERO).add(TAB_LINE);
-				mainAl.get(COL_ONE).add(lineB);
-				mainAl.get(COL_TWO).add(TAB_LINE);
-				indexLineFile2++;
+		RowHandler handler = new RowHandler() {
+			@Override
+			public void handleRow(int column, String line) {
+				for (int i = COL_ZERO; i <= COL_TWO; i++) {
+					mainAl.get(i).add(i == column ? line : TAB_LINE);
+				}
+			}
+		};
+		try {
+			compareLines(new ListLineSource(strList1), new ListLineSource(strList2), handler);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return mainAl;
+	}
+
+	/**
+	 * Compares two readers line by line, passing each row to the handler as
+	 * soon as it is known. Only the current line of each reader is held, so
+	 * inputs of any size can be compared.
+	 * 
+	 * @param reader1
+	 *            lines of the first input
+	 * @param reader2
+	 *            lines of the second input
+	 * @param handler
+	 *            receives the rows in output order
+	 * @throws IOException
+	 *             If either reader or the handler fails
+	 */
+	public static void compareLines(final BufferedReader reader1, final BufferedReader reader2, RowHandler handler)
+			throws IOException {
+		compareLines(new LineSource() {
+			@Override
+			public String readLine() throws IOException {
+				return reader1.readLine();
+			}
+		}, new LineSource() {
+			@Override
+			public String readLine() throws IOException {
+				return reader2.readLine();
+			}
+		}, handler);
+	}
+
+	/**
+	 * Compares two readers whose lines may be in any order. The lines of one
+	 * reader are loaded into a {@link LineHashSet}, then the other reader is
+	 * streamed against it: each streamed line is output as it is read, in the
+	 * third column if it matches a loaded line that is not matched yet and in
+	 * its own column otherwise. The loaded lines left unmatched follow in the
+	 * order they were read. Memory grows only with the loaded input, so the
+	 * smaller input should be the one loaded.
+	 * 
+	 * @param reader1
+	 *            lines of the first input
+	 * @param reader2
+	 *            lines of the second input
+	 * @param loadFirst
+	 *            true to load the first input and stream the second, false
+	 *            for the other way round
+	 * @param handler
+	 *            receives the rows in output order
+	 * @throws IOException
+	 *             If either reader or the handler fails
+	 */
+	public static void compareUnsortedLines(BufferedReader reader1, BufferedReader reader2, boolean loadFirst,
+			RowHandler handler) throws IOException {
+		BufferedReader loaded = loadFirst ? reader1 : reader2;
+		BufferedReader streamed = loadFirst ? reader2 : reader1;
+		int loadedColumn = loadFirst ? COL_ZERO : COL_ONE;
+		int streamedColumn = loadFirst ? COL_ONE : COL_ZERO;
+		LineHashSet lineSet = new LineHashSet();
+		String line;
+		while ((line = loaded.readLine()) != null) {
+			lineSet.add(line);
+		}
+		while ((line = streamed.readLine()) != null) {
+			handler.handleRow(lineSet.remove(line) ? COL_TWO : streamedColumn, line);
+		}
+		List<String> remaining = lineSet.remainingLines();
+		for (String remainingLine : remaining) {
+			handler.handleRow(loadedColumn, remainingLine);
+		}
+	}
+
+	/**
+	 * Walks both sources in lockstep. An exhausted source compares as an
+	 * empty line, and an empty line is placed before any non-empty one.
+	 */
+	private static void compareLines(LineSource source1, LineSource source2, RowHandler handler)
+			throws IOException {
+		String currentA = source1.readLine();
+		String currentB = source2.readLine();
+		while (currentA != null || currentB != null) {
+			String lineA = currentA == null ? "" : currentA;
+			String lineB = currentB == null ? "" : currentB;
+			if (lineA.length() == 0 && lineB.length() != 0) {
+				handler.handleRow(COL_ONE, lineB);
+				currentB = source2.readLine();
 			} else if (lineA.length() != 0 && lineB.length() == 0) {
-				mainAl.get(COL_ZERO).add(lineA);
-				mainAl.get(COL_ONE).add(TAB_LINE);
-				mainAl.get(COL_TWO).add(TAB_LINE);
-				indexLineFile1++;
+				handler.handleRow(COL_ZERO, lineA);
+				currentA = source1.readLine();
 			} else {// compare lines that are not empty
-				result = MergeSort.customCompare(lineA, lineB);
+				int result = MergeSort.customCompare(lineA, lineB);
 				if (result == ZERO) {
-					mainAl.get(COL_ZERO).add(TAB_LINE);
-					mainAl.get(COL_ONE).add(TAB_LINE);
-					mainAl.get(COL_TWO).add(lineA);
-					indexLineFile1++;
-					indexLineFile2++;
-
+					handler.handleRow(COL_TWO, lineA);
+					currentA = source1.readLine();
+					currentB = source2.readLine();
 				} else if (result < ZERO) {// output to first col
-					mainAl.get(COL_ZERO).add(lineA);
-					mainAl.get(COL_ONE).add(TAB_LINE);
-					mainAl.get(COL_TWO).add(TAB_LINE);
-					indexLineFile1++;
+					handler.handleRow(COL_ZERO, lineA);
+					currentA = source1.readLine();
 				} else {// output to second column
-					mainAl.get(COL_ZERO).add(TAB_LINE);
-					mainAl.get(COL_ONE).add(lineB);
-					mainAl.get(COL_TWO).add(TAB_LINE);
-					indexLineFile2++;
+					handler.handleRow(COL_ONE, lineB);
+					currentB = source2.readLine();
 				}
 			}
 		}
-		return mainAl;
 	}
 
 	/**
-	 * This method gets the particular line from a list based on the index
-	 * provided
-	 * 
-	 * @param strList
-	 *            <String>
-	 * @param lineIndexFile1
-	 * @return string content of the string
+	 * A sequence of lines that returns null once exhausted, and keeps
+	 * returning null if read again.
 	 */
-	private String getLineFromList(ArrayList<String> strList, int lineIndexFile1) {
-		String currentLine = "";
-		if (lineIndexFile1 < strList.size()) {
-			currentLine = strList.get(lineIndexFile1);
+	private interface LineSource {
+		String readLine() throws IOException;
+	}
+
+	private static class ListLineSource implements LineSource {
+		private final ArrayList<String> strList;
+		private int index;
+
+		ListLineSource(ArrayList<String> strList) {
+			this.strList = strList;
+		}
+
+		@Override
+		public String readLine() {
+			return index < strList.size() ? strList.get(index++) : null;
 		}
-		return currentLine;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,167 @@
+package sg.edu.nus.comp.cs4218.misc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A multiset of lines for matching one input against another that is streamed
+ * past it. Lines are kept in an open addressing table of 64-bit hashes with
+ * linear probing; a probe only compares the strings themselves when the full
+ * hashes are equal. Each distinct line is stored once, and the order in which
+ * lines were added is kept as a compact array of entry numbers.
+ *
+ * Every added occurrence of a line can be removed once. The occurrences that
+ * were never removed can then be listed in the order they were added.
+ */
+public class LineHashSet {
+	private static final int INITIAL_CAPACITY = 16;
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private long[] slotHashes = new long[INITIAL_CAPACITY];
+	private int[] slotEntries = new int[INITIAL_CAPACITY];
+	private String[] entryLines = new String[INITIAL_CAPACITY];
+	private int[] entryCounts = new int[INITIAL_CAPACITY];
+	private int[] entryRemaining = new int[INITIAL_CAPACITY];
+	private int numEntries;
+	private int[] lineEntries = new int[INITIAL_CAPACITY];
+	private int numLines;
+	private int numRemaining;
+
+	/**
+	 * Adds an occurrence of a line.
+	 *
+	 * @param line
+	 *            line without its terminator
+	 */
+	public void add(String line) {
+		long hash = hash(line);
+		int slot = findSlot(line, hash);
+		int entry = slotEntries[slot] - 1;
+		if (entry < 0) {
+			entry = addEntry(line, hash, slot);
+		}
+		entryCounts[entry]++;
+		entryRemaining[entry]++;
+		if (numLines == lineEntries.length) {
+			lineEntries = Arrays.copyOf(lineEntries, numLines * 2);
+		}
+		lineEntries[numLines++] = entry;
+		numRemaining++;
+	}
+
+	/**
+	 * Removes one occurrence of a line if any is left.
+	 *
+	 * @param line
+	 *            line without its terminator
+	 * @return true if an occurrence was removed
+	 */
+	public boolean remove(String line) {
+		int entry = slotEntries[findSlot(line, hash(line))] - 1;
+		if (entry < 0 || entryRemaining[entry] == 0) {
+			return false;
+		}
+		entryRemaining[entry]--;
+		numRemaining--;
+		return true;
+	}
+
+	/**
+	 * Returns the number of occurrences added and not removed.
+	 */
+	public int size() {
+		return numRemaining;
+	}
+
+	/**
+	 * Returns the occurrences that were not removed in the order they were
+	 * added. Removing a line is taken to remove its earliest occurrence.
+	 */
+	public List<String> remainingLines() {
+		List<String> remaining = new ArrayList<String>(numRemaining);
+		int[] removed = new int[numEntries];
+		for (int entry = 0; entry < numEntries; entry++) {
+			removed[entry] = entryCounts[entry] - entryRemaining[entry];
+		}
+		for (int i = 0; i < numLines; i++) {
+			int entry = lineEntries[i];
+			if (removed[entry] > 0) {
+				removed[entry]--;
+			} else {
+				remaining.add(entryLines[entry]);
+			}
+		}
+		return remaining;
+	}
+
+	/**
+	 * Returns the slot holding the line, or the empty slot where it belongs.
+	 */
+	private int findSlot(String line, long hash) {
+		int mask = slotEntries.length - 1;
+		int slot = spread(hash) & mask;
+		while (slotEntries[slot] != 0) {
+			if (slotHashes[slot] == hash && entryLines[slotEntries[slot] - 1].equals(line)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private int addEntry(String line, long hash, int slot) {
+		if (numEntries == entryLines.length) {
+			int capacity = numEntries * 2;
+			entryLines = Arrays.copyOf(entryLines, capacity);
+			entryCounts = Arrays.copyOf(entryCounts, capacity);
+			entryRemaining = Arrays.copyOf(entryRemaining, capacity);
+		}
+		int entry = numEntries++;
+		entryLines[entry] = line;
+		slotHashes[slot] = hash;
+		slotEntries[slot] = entry + 1;
+		if (numEntries * 2 > slotEntries.length) {
+			rehash(slotEntries.length * 2);
+		}
+		return entry;
+	}
+
+	/**
+	 * Moves every entry to a larger table using the stored hashes, so no line
+	 * is hashed twice.
+	 */
+	private void rehash(int capacity) {
+		long[] oldHashes = slotHashes;
+		int[] oldEntries = slotEntries;
+		slotHashes = new long[capacity];
+		slotEntries = new int[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldEntries.length; i++) {
+			if (oldEntries[i] != 0) {
+				int slot = spread(oldHashes[i]) & mask;
+				while (slotEntries[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slotHashes[slot] = oldHashes[i];
+				slotEntries[slot] = oldEntries[i];
+			}
+		}
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the characters of the line.
+	 */
+	private static long hash(String line) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < line.length(); i++) {
+			hash = (hash ^ line.charAt(i)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	private static int spread(long hash) {
+		return (int) (hash ^ (hash >>> 32));
+	}
+}
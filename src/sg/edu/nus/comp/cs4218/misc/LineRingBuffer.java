@@ -0,0 +1,152 @@
+package sg.edu.nus.comp.cs4218.misc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A circular buffer that keeps the raw bytes of the last N lines written to
+ * it. Each of the N slots owns a byte array that is reused when the slot is
+ * overwritten, so once the buffer is warmed up streaming further lines through
+ * it allocates nothing and the memory used depends only on N and the length of
+ * the longest line kept.
+ *
+ * A line is built up with {@link #write(byte[], int, int)} and committed with
+ * {@link #endLine()}. Starting a line when all slots are taken discards the
+ * oldest line.
+ */
+public class LineRingBuffer {
+	private static final int INITIAL_SLOT_SIZE = 128;
+
+	private final byte[][] slots;
+	private final int[] lengths;
+	private int head;
+	private int count;
+	private boolean linePending;
+
+	/**
+	 * Creates an empty buffer.
+	 *
+	 * @param capacity
+	 *            number of lines kept, may be 0
+	 */
+	public LineRingBuffer(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Capacity must not be negative");
+		}
+		this.slots = new byte[capacity][];
+		this.lengths = new int[capacity];
+	}
+
+	/**
+	 * Appends bytes to the line currently being written.
+	 *
+	 * @param src
+	 *            array holding the bytes
+	 * @param off
+	 *            offset of the first byte in src
+	 * @param len
+	 *            number of bytes to append
+	 */
+	public void write(byte[] src, int off, int len) {
+		if (slots.length == 0) {
+			return;
+		}
+		if (!linePending) {
+			startLine();
+		}
+		int slot = pendingSlot();
+		int length = lengths[slot];
+		if (slots[slot].length - length < len) {
+			slots[slot] = Arrays.copyOf(slots[slot], Math.max(length + len, slots[slot].length * 2));
+		}
+		System.arraycopy(src, off, slots[slot], length, len);
+		lengths[slot] = length + len;
+	}
+
+	/**
+	 * Commits the line currently being written, which may be empty.
+	 */
+	public void endLine() {
+		if (slots.length == 0) {
+			return;
+		}
+		if (!linePending) {
+			startLine();
+		}
+		linePending = false;
+		count++;
+	}
+
+	/**
+	 * Returns true if bytes have been written since the last committed line.
+	 */
+	public boolean hasPendingLine() {
+		return linePending;
+	}
+
+	/**
+	 * Returns the number of committed lines held, at most the capacity.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns a copy of a committed line.
+	 *
+	 * @param index
+	 *            0 for the oldest line held
+	 * @return the bytes of the line without its terminator
+	 */
+	public byte[] get(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+		}
+		int slot = (head + index) % slots.length;
+		return Arrays.copyOf(slots[slot], lengths[slot]);
+	}
+
+	/**
+	 * Writes the committed lines, oldest first, each followed by the given
+	 * terminator.
+	 *
+	 * @param out
+	 *            stream to write to
+	 * @param terminator
+	 *            bytes written after every line
+	 * @throws IOException
+	 *             If there is an error writing to out
+	 */
+	public void writeTo(OutputStream out, byte[] terminator) throws IOException {
+		for (int i = 0; i < count; i++) {
+			int slot = (head + i) % slots.length;
+			out.write(slots[slot], 0, lengths[slot]);
+			out.write(terminator);
+		}
+	}
+
+	/**
+	 * Frees the slot for a new line, discarding the oldest line if the buffer
+	 * is full.
+	 */
+	private void startLine() {
+		if (count == slots.length) {
+			head = (head + 1) % slots.length;
+			count--;
+		}
+		int slot = pendingSlot();
+		if (slots[slot] == null) {
+			slots[slot] = new byte[INITIAL_SLOT_SIZE];
+		}
+		lengths[slot] = 0;
+		linePending = true;
+	}
+
+	/**
+	 * The slot the line being written goes to.
+	 */
+	private int pendingSlot() {
+		return (head + count) % slots.length;
+	}
+}
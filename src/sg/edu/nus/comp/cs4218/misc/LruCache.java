@@ -0,0 +1,121 @@
+package sg.edu.nus.comp.cs4218.misc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache holding at most a fixed number of entries. Once full,
+ * adding an entry evicts the entry that was least recently used. Lookups are
+ * counted as hits or misses so that the effectiveness of the cache can be
+ * observed.
+ *
+ * @param <K>
+ *            type of the keys
+ * @param <V>
+ *            type of the cached values
+ */
+public class LruCache<K, V> {
+	private final int maxEntries;
+	private final Map<K, V> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param maxEntries
+	 *            maximum number of entries kept by the cache
+	 */
+	public LruCache(final int maxEntries) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("Cache size must be positive");
+		}
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > LruCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the value cached for the key and marks it as recently used.
+	 *
+	 * @param key
+	 *            key to look up
+	 * @return the cached value, or null if the key is not cached
+	 */
+	public V get(K key) {
+		V value;
+		synchronized (entries) {
+			value = entries.get(key);
+		}
+		if (value == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return value;
+	}
+
+	/**
+	 * Caches a value, evicting the least recently used entry if the cache is
+	 * full.
+	 *
+	 * @param key
+	 *            key of the entry
+	 * @param value
+	 *            value of the entry, must not be null
+	 */
+	public void put(K key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Cannot cache null values");
+		}
+		synchronized (entries) {
+			entries.put(key, value);
+		}
+	}
+
+	/**
+	 * Removes the entry of the given key, if any.
+	 *
+	 * @param key
+	 *            key of the entry to remove
+	 */
+	public void remove(K key) {
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	/**
+	 * Removes all entries. The hit and miss counters are left untouched.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+}
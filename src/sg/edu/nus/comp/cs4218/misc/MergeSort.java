@@ -1,10 +1,28 @@
 package sg.edu.nus.comp.cs4218.misc;
 
 import java.math.BigInteger;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import sg.edu.nus.comp.cs4218.exception.SortException;
 
+/**
+ * Stable merge sort of lines in natural or alphanum order. Every merge goes
+ * through one auxiliary array allocated per sort, and runs of at most
+ * {@link #INSERTION_SORT_THRESHOLD} lines are insertion sorted. In parallel
+ * mode, ranges of more than {@link #PARALLEL_THRESHOLD} lines are sorted as
+ * fork/join tasks in the common pool, so large sorts scale with the number of
+ * cores while giving the same result as a sequential sort.
+ *
+ * In alphanum order the leading number of every line is parsed once into a
+ * {@link NumKey} before sorting, so comparisons do not allocate. Callers that
+ * compare lines themselves, such as a merge of sorted runs, can do the same
+ * through {@link #compare(NumKey, NumKey)}.
+ */
 public class MergeSort {
+	public static final int INSERTION_SORT_THRESHOLD = 16;
+	public static final int PARALLEL_THRESHOLD = 8192;
 	private static final int ZERO = 0;
 	private static final int DIGIT_START = 48;
 	private static final int DIGIT_END = 57;
@@ -12,15 +30,41 @@ public class MergeSort {
 	private static final int CAPITAL_END = 90;
 	private static final int LOWER_START = 97;
 	private static final int LOWER_END = 122;
+	private static final int LONG_SAFE_DIGITS = 18;
+	private static final int RADIX = 10;
+	private static final int BYTE_MASK = 0xFF;
+	private static final char[] WEIGHTS = buildWeights();
+
+	private static final Comparator<String> NATURAL_ORDER = new Comparator<String>() {
+		@Override
+		public int compare(String str1, String str2) {
+			return customCompare(str1, str2);
+		}
+	};
+
+	private static final Comparator<NumKey> NUM_ORDER = new Comparator<NumKey>() {
+		@Override
+		public int compare(NumKey key1, NumKey key2) {
+			return compareIncludeNumOrder(key1, key2);
+		}
+	};
+
 	private final boolean numFlag;
+	private final boolean parallel;
 
 	public MergeSort(boolean numFlag) {
+		this(numFlag, false);
+	}
+
+	public MergeSort(boolean numFlag, boolean parallel) {
 		this.numFlag = numFlag;
+		this.parallel = parallel;
 	}
 
 	/**
 	 * Uses the merge sort algorithm. Start by dividing them before calling
-	 * merge method
+	 * merge method. Sorts in parallel if this sorter is in parallel mode and
+	 * the range is large enough.
 	 * 
 	 * @param toSort
 	 *            array to be sorted
@@ -38,229 +82,357 @@ public class MergeSort {
 		if (pos1 < ZERO || pos2 > toSort.length - 1) {
 			throw new SortException("Postion cannot be negative or beyond array's size");
 		}
-		int front = pos1;
-		int mid = 0;
-		int back = pos2;
+		if (pos1 >= pos2) {
+			return toSort;
+		}
+		if (!this.numFlag) {// natural sort
+			sortRange(toSort, pos1, pos2, NATURAL_ORDER);
+			return toSort;
+		}
+		// alphanum, parse every line once then sort the keys
+		NumKey[] keys = new NumKey[pos2 - pos1 + 1];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = new NumKey(toSort[pos1 + i]);
+		}
+		sortRange(keys, ZERO, keys.length - 1, NUM_ORDER);
+		for (int i = 0; i < keys.length; i++) {
+			toSort[pos1 + i] = keys[i].line;
+		}
+		return toSort;
+	}
+
+	private <T> void sortRange(T[] toSort, int front, int back, Comparator<? super T> order) {
+		T[] aux = toSort.clone();
+		if (parallel && back - front >= PARALLEL_THRESHOLD) {
+			ForkJoinPool.commonPool().invoke(new SortTask<T>(toSort, aux, front, back, order));
+		} else {
+			sort(toSort, aux, front, back, order);
+		}
+	}
 
-		if (front < back) {
-			mid = (front + back) / 2;
-			mergeSort(toSort, front, mid);
-			mergeSort(toSort, mid + 1, back);
-			merge(toSort, front, mid, back);
+	private static <T> void sort(T[] toSort, T[] aux, int front, int back, Comparator<? super T> order) {
+		if (back - front < INSERTION_SORT_THRESHOLD) {
+			insertionSort(toSort, front, back, order);
+			return;
 		}
+		int mid = (front + back) >>> 1;
+		sort(toSort, aux, front, mid, order);
+		sort(toSort, aux, mid + 1, back, order);
+		merge(toSort, aux, front, mid, back, order);
+	}
 
-		return toSort;
+	/**
+	 * Sorts a short range in place. Lines only move past lines that sort
+	 * strictly after them, which keeps the sort stable.
+	 */
+	private static <T> void insertionSort(T[] toSort, int front, int back, Comparator<? super T> order) {
+		for (int i = front + 1; i <= back; i++) {
+			T current = toSort[i];
+			int j = i - 1;
+			while (j >= front && order.compare(toSort[j], current) > 0) {
+				toSort[j + 1] = toSort[j];
+				j--;
+			}
+			toSort[j + 1] = current;
+		}
 	}
 
 	/**
-	 * Sort contents in a file Natural ordering is the default ordering change
-	 * numFlag to true to enable alphanum ordering
+	 * Merges two sorted halves of a range. Natural ordering is the default
+	 * ordering change numFlag to true to enable alphanum ordering
 	 * 
 	 * @param toSort
 	 *            array to be sorted
+	 * @param aux
+	 *            auxiliary array at least as long as toSort, the range being
+	 *            merged is overwritten
 	 * @param front
 	 *            starting position of array
 	 * @param mid
 	 *            middle position of array
 	 * @param back
 	 *            ending position of array
-	 * @return an sorted array
+	 * @param order
+	 *            the ordering to merge in
 	 */
-	private void merge(String[] toSort, int front, int mid, int back) {
-		int rightOfMid = mid + 1;
+	private static <T> void merge(T[] toSort, T[] aux, int front, int mid, int back, Comparator<? super T> order) {
+		if (order.compare(toSort[mid], toSort[mid + 1]) <= 0) {
+			return; // already in order
+		}
+		System.arraycopy(toSort, front, aux, front, back - front + 1);
 		int left = front;
-		int iterate = 0;
-		String[] tempArr = new String[back - front + 1];
+		int rightOfMid = mid + 1;
+		int iterate = front;
 
 		while (left <= mid && rightOfMid <= back) {
-			if (this.numFlag) {// alphanum
-				if (compareIncludeNumOrder(toSort[left], toSort[rightOfMid]) <= 0) {
-					tempArr[iterate++] = toSort[left++];
-				} else {
-					tempArr[iterate++] = toSort[rightOfMid++];
-				}
-			} else {// natural sort
-				if (customCompare(toSort[left], toSort[rightOfMid]) <= 0) {
-					tempArr[iterate++] = toSort[left++];
-				} else {
-					tempArr[iterate++] = toSort[rightOfMid++];
-				}
+			if (order.compare(aux[left], aux[rightOfMid]) <= 0) {
+				toSort[iterate++] = aux[left++];
+			} else {
+				toSort[iterate++] = aux[rightOfMid++];
 			}
-
 		}
 
 		while (left <= mid) {
-			tempArr[iterate++] = toSort[left++];
+			toSort[iterate++] = aux[left++];
 		}
-		while (rightOfMid <= back) {
-			tempArr[iterate++] = toSort[rightOfMid++];
-		}
-
-		System.arraycopy(tempArr, ZERO, toSort, front, tempArr.length);
+		// the rest of the right half is already in place
 	}
 
 	/**
-	 * Attempts to get the first number of a line. If the line itself is a
-	 * number, the line will be returned If a line consists of words and the
-	 * first word happens to be a number, only the first word will be returned
+	 * Compares two lines in the order used by this sorter, alphanum order if
+	 * numFlag is set and natural order otherwise
 	 * 
-	 * @param line
-	 *            input string
-	 * @return a string
+	 * @param str1
+	 *            first input string
+	 * @param str2
+	 *            second input string
+	 * @return negative, zero or positive if str1 sorts before, together with or
+	 *         after str2
 	 */
-	private String extractFirstNumberWordFromLine(String line) {
-		String result = "";
-		result = checkIfStringIsDigit(line);
-		result = checkIfWordIsDigitLastResort(line, result);
-		return result;
+	public int compare(String str1, String str2) {
+		if (this.numFlag) {// alphanum
+			return compareIncludeNumOrder(new NumKey(str1), new NumKey(str2));
+		}
+		return customCompare(str1, str2);
 	}
 
 	/**
-	 * This method gets the first word of the line and checks if it consists
-	 * only of numbers
+	 * Compares two lines already parsed into keys in the order used by this
+	 * sorter, so that a line compared many times is parsed only once
 	 * 
-	 * @param line
-	 *            input string
-	 * @param result
-	 *            an empty string if the input line does not consists of numbers
-	 * @return the first word of a string that is a number
+	 * @param key1
+	 *            first parsed input string
+	 * @param key2
+	 *            second parsed input string
+	 * @return negative, zero or positive if key1 sorts before, together with or
+	 *         after key2
 	 */
-	private String checkIfWordIsDigitLastResort(String line, String result) {
-		String assumedNumberWord = "";
-		StringBuilder stringBuilder = new StringBuilder("");
-		if (result.isEmpty()) {
-			for (int i = 0; i < line.length(); i++) {
-				if (!Character.isDigit(line.charAt(i))) {
-					break;
-				}
-				stringBuilder.append(line.charAt(i));
-			}
-			assumedNumberWord = stringBuilder.toString();
-		} else {
-			assumedNumberWord = result;
+	public int compare(NumKey key1, NumKey key2) {
+		if (this.numFlag) {// alphanum
+			return compareIncludeNumOrder(key1, key2);
 		}
-		return assumedNumberWord;
+		return customCompare(key1.line, key2.line);
 	}
 
 	/**
-	 * It checks if the entire string consists only of numbers
+	 * Compare Strings in alphanum then in natural order. Empty lines come
+	 * first. Lines that both start with a number are ordered by that number,
+	 * lines starting with the same digits are then compared in natural order.
 	 * 
-	 * @param line
-	 *            input string
-	 * @return the orginal string
+	 * @param key1
+	 *            first parsed input string
+	 * @param key2
+	 *            second parsed input string
+	 * @return int
 	 */
-	private String checkIfStringIsDigit(String line) {
-		String result = "";
-		int count = 0;
-		for (int i = 0; i < line.length(); i++) {
-			if (Character.isDigit(line.charAt(i))) {
-				count++;
-			}
+	private static int compareIncludeNumOrder(NumKey key1, NumKey key2) {
+		if (key1.line.isEmpty() && !key2.line.isEmpty()) {
+			return -1;
+		} else if (!key1.line.isEmpty() && key2.line.isEmpty()) {
+			return 1;
 		}
-		if (count == line.length()) {
-			result = line;
+		if (key1.digits > 0 && key2.digits > 0) {
+			int result = key1.compareNumber(key2);
+			if (result != 0) {
+				return result;
+			}
+			// equal values written with the same number of digits are the
+			// same number word, otherwise they differ only in leading zeros
+			return key1.digits == key2.digits ? customCompare(key1.line, key2.line) : 0;
 		}
-		return result;
+		return customCompare(key1.line, key2.line);
 	}
 
 	/**
-	 * Compare Strings in alphanum then in natural order
+	 * This method compares both string character by character based on its
+	 * precedence. Characters are compared by their weight in a lookup table
+	 * that orders them as Special -> Digit -> Capital -> Lower, and by
+	 * character code within each group. A string sorts before any longer
+	 * string it is a prefix of.
 	 * 
 	 * @param str1
-	 *            first input string
 	 * @param str2
-	 *            second input string
-	 * @return int
+	 * @return int which indicates if a particular string should appear before
+	 *         or after the other
+	 * 
 	 */
-	private int compareIncludeNumOrder(String str1, String str2) {
-		if (str1.isEmpty() && !str2.isEmpty()) {
-			return -1;
-		} else if (!str1.isEmpty() && str2.isEmpty()) {
-			return 1;
-		} else {
-			return checkOnlyAtFirstNumWord(str1, str2);
+	public static int customCompare(String str1, String str2) {
+		int shortLength = Math.min(str1.length(), str2.length());
+		for (int i = 0; i < shortLength; i++) {
+			char char1 = str1.charAt(i);
+			char char2 = str2.charAt(i);
+			if (char1 != char2) {
+				return WEIGHTS[char1] - WEIGHTS[char2];
+			}
 		}
+		return str1.length() - str2.length();
+	}
 
+	/**
+	 * Returns the weight of a character in the order used by
+	 * {@link #customCompare(String, String)}. Distinct characters have
+	 * distinct weights.
+	 * 
+	 * @param chr
+	 *            input character
+	 * @return the weight, from 0 to 65535
+	 */
+	static char weight(char chr) {
+		return WEIGHTS[chr];
 	}
 
 	/**
-	 * This method attempts to compare the first Number word of both strings
+	 * Returns the collation key of a line: two bytes per character holding
+	 * its weight, most significant byte first. Comparing two keys as unsigned
+	 * bytes with {@link #compareCollationKeys(byte[], byte[])} gives the same
+	 * order as {@link #customCompare(String, String)}, so keys can be
+	 * computed once per line and then sorted by plain byte comparison.
 	 * 
-	 * @param str1
-	 *            first input string
-	 * @param str2
-	 *            second input string
-	 * @return int
+	 * @param line
+	 *            input string
+	 * @return the collation key
 	 */
-	private int checkOnlyAtFirstNumWord(String str1, String str2) {
-		String assumedNumStr1;
-		String assumedNumStr2;
-		assumedNumStr1 = extractFirstNumberWordFromLine(str1);
-		assumedNumStr2 = extractFirstNumberWordFromLine(str2);
+	public static byte[] collationKey(String line) {
+		byte[] key = new byte[line.length() * 2];
+		for (int i = 0; i < line.length(); i++) {
+			char weight = WEIGHTS[line.charAt(i)];
+			key[2 * i] = (byte) (weight >>> 8);
+			key[2 * i + 1] = (byte) weight;
+		}
+		return key;
+	}
 
-		if (assumedNumStr1.length() > 0 && assumedNumStr2.length() > 0) {
-			if (assumedNumStr1.compareTo(assumedNumStr2) == 0) {
-				return customCompare(str1, str2);
-			} else {
-				return new BigInteger(assumedNumStr1).compareTo(new BigInteger(assumedNumStr2));
+	/**
+	 * Compares two collation keys as unsigned bytes, a key sorting before any
+	 * longer key it is a prefix of.
+	 * 
+	 * @param key1
+	 *            first collation key
+	 * @param key2
+	 *            second collation key
+	 * @return negative, zero or positive if key1 sorts before, together with or
+	 *         after key2
+	 */
+	public static int compareCollationKeys(byte[] key1, byte[] key2) {
+		int shortLength = Math.min(key1.length, key2.length);
+		for (int i = 0; i < shortLength; i++) {
+			if (key1[i] != key2[i]) {
+				return (key1[i] & BYTE_MASK) - (key2[i] & BYTE_MASK);
 			}
-		} else {
-			return customCompare(str1, str2);
 		}
+		return key1.length - key2.length;
 	}
 
 	/**
-	 * This method compares both string character by character based on its
-	 * precedence
-	 * 
-	 * @param str1
-	 * @param str2
-	 * @return int which indicates if a particular string should appear before
-	 *         or after the other
+	 * Builds the weight of every character. Precedence goes in this order
+	 * Special -> Digit -> Capital -> Lower, where every character outside the
+	 * ASCII digits and letters is special.
 	 * 
+	 * @return weights indexed by character
 	 */
-	public static int customCompare(String str1, String str2) {
-		int shortLength = str1.length() >= str2.length() ? str2.length() : str1.length();
-		int result = str1.length() < str2.length() ? -1 : 1;
-		if (str1.equals(str2)) {
-			return 0;
+	private static char[] buildWeights() {
+		char[] weights = new char[Character.MAX_VALUE + 1];
+		char next = 0;
+		for (int chr = 0; chr <= Character.MAX_VALUE; chr++) {
+			boolean isDigit = chr >= DIGIT_START && chr <= DIGIT_END;
+			boolean isCapital = chr >= CAPITAL_START && chr <= CAPITAL_END;
+			boolean isLower = chr >= LOWER_START && chr <= LOWER_END;
+			if (!isDigit && !isCapital && !isLower) {
+				weights[chr] = next++;
+			}
 		}
-		for (int i = 0; i < shortLength; i++) {
-			if (getRank(str1.charAt(i)) < getRank(str2.charAt(i))) {
-				return 1;
-			} else if (getRank(str1.charAt(i)) > getRank(str2.charAt(i))) {
-				return -1;
+		int[][] groups = { { DIGIT_START, DIGIT_END }, { CAPITAL_START, CAPITAL_END },
+				{ LOWER_START, LOWER_END } };
+		for (int[] group : groups) {
+			for (int chr = group[0]; chr <= group[1]; chr++) {
+				weights[chr] = next++;
+			}
+		}
+		return weights;
+	}
+
+	/**
+	 * The number a line starts with, parsed once so that lines can be
+	 * compared without allocating. Values of up to 18 significant digits are
+	 * held in a long, longer ones in a BigInteger.
+	 */
+	public static final class NumKey {
+		private final String line;
+		private final int digits;
+		private final long value;
+		private final BigInteger bigValue;
+
+		public NumKey(String line) {
+			this.line = line;
+			int end = 0;
+			while (end < line.length() && Character.isDigit(line.charAt(end))) {
+				end++;
+			}
+			int start = 0;
+			while (start < end && Character.digit(line.charAt(start), RADIX) == 0) {
+				start++;
+			}
+			long parsed = 0;
+			BigInteger parsedBig = null;
+			if (end - start > LONG_SAFE_DIGITS) {
+				parsedBig = new BigInteger(line.substring(start, end));
 			} else {
-				if (str1.charAt(i) - str2.charAt(i) == 0) {
-					continue;
-				} else {
-					return str1.charAt(i) - str2.charAt(i);
+				for (int i = start; i < end; i++) {
+					parsed = parsed * RADIX + Character.digit(line.charAt(i), RADIX);
 				}
 			}
+			this.digits = end;
+			this.value = parsed;
+			this.bigValue = parsedBig;
+		}
+
+		public String getLine() {
+			return line;
+		}
+
+		int compareNumber(NumKey other) {
+			if (bigValue == null && other.bigValue == null) {
+				return Long.compare(value, other.value);
+			}
+			if (bigValue == null || other.bigValue == null) {
+				// more significant digits than fit in a long is larger
+				return bigValue == null ? -1 : 1;
+			}
+			return bigValue.compareTo(other.bigValue);
 		}
-		return result;
 	}
 
 	/**
-	 * This methods identify the precedence/ rank of a character. Precedence
-	 * goes in this order Special -> Digit -> Capital -> Lower
-	 * 
-	 * @param currChar
-	 *            input character
-	 * @return int rank number
+	 * Sorts a range by sorting both halves as parallel subtasks, then merging
+	 * them. Ranges below the threshold are sorted sequentially. The halves are
+	 * disjoint, so the tasks can share the auxiliary array.
 	 */
-	private static int getRank(char currChar) {
-		int asciiNum = currChar;
-		int result = -1;
-		if (asciiNum >= CAPITAL_START && asciiNum <= CAPITAL_END) {
-			result = 2;
-		} else if (asciiNum >= LOWER_START && asciiNum <= LOWER_END) {
-			result = 1;
-		} else if (asciiNum >= DIGIT_START && asciiNum <= DIGIT_END) {
-			result = 3;
-		} else {
-			result = 4;// special characters
+	private static class SortTask<T> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final T[] toSort;
+		private final T[] aux;
+		private final int front;
+		private final int back;
+		private final Comparator<? super T> order;
+
+		SortTask(T[] toSort, T[] aux, int front, int back, Comparator<? super T> order) {
+			this.toSort = toSort;
+			this.aux = aux;
+			this.front = front;
+			this.back = back;
+			this.order = order;
+		}
+
+		@Override
+		protected void compute() {
+			if (back - front < PARALLEL_THRESHOLD) {
+				sort(toSort, aux, front, back, order);
+				return;
+			}
+			int mid = (front + back) >>> 1;
+			invokeAll(new SortTask<T>(toSort, aux, front, mid, order),
+					new SortTask<T>(toSort, aux, mid + 1, back, order));
+			merge(toSort, aux, front, mid, back, order);
 		}
-		return result;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,247 @@
+package sg.edu.nus.comp.cs4218.misc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Prints a part of each of several files, such as their first or last lines,
+ * one after the other under a <code>==&gt; name &lt;==</code> header, the way
+ * head and tail do when given more than one file.
+ *
+ * The parts are read concurrently on a pool of at most {@link #MAX_THREADS}
+ * threads, so the time taken is bounded by the throughput of the disk rather
+ * than the latency of each read. They are still written in the order the
+ * files were given. The part being written goes straight to stdout as it is
+ * read. Parts read ahead of it are held in memory, at most
+ * {@link #MAX_PREFETCH} of them and at most {@link #MAX_BUFFERED_BYTES} bytes
+ * in all; a reader that would go over that waits until it is its turn.
+ */
+public class MultiFilePrinter {
+	public static final int MAX_THREADS = 8;
+	public static final int MAX_PREFETCH = 64;
+	public static final long MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+	private static final int CHUNK_OVERHEAD = 16;
+	private static final byte[] NEW_LINE_BYTES = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Reads the part of a file to print.
+	 */
+	public interface PartReader {
+		/**
+		 * Writes the part of the file to print to out.
+		 *
+		 * @param filePath
+		 *            path of the file
+		 * @param out
+		 *            stream to write the part to
+		 * @throws Exception
+		 *             If the file cannot be read
+		 */
+		void readPart(Path filePath, OutputStream out) throws Exception;
+	}
+
+	private final PartReader partReader;
+	private final long maxBufferedBytes;
+
+	/**
+	 * Creates a printer reading each part with the given reader.
+	 *
+	 * @param partReader
+	 *            reads the part of a file to print
+	 */
+	public MultiFilePrinter(PartReader partReader) {
+		this(partReader, MAX_BUFFERED_BYTES);
+	}
+
+	/**
+	 * Creates a printer reading each part with the given reader and holding
+	 * at most the given number of bytes of parts read ahead.
+	 *
+	 * @param partReader
+	 *            reads the part of a file to print
+	 * @param maxBufferedBytes
+	 *            number of bytes of parts read ahead held at once
+	 */
+	public MultiFilePrinter(PartReader partReader, long maxBufferedBytes) {
+		this.partReader = partReader;
+		this.maxBufferedBytes = maxBufferedBytes;
+	}
+
+	/**
+	 * Prints the parts of all files, each under a header with its name, with
+	 * an empty line between two files.
+	 *
+	 * @param names
+	 *            names of the files shown in the headers
+	 * @param filePaths
+	 *            paths of the files, in the same order as names
+	 * @param stdout
+	 *            stream to write to
+	 * @throws Exception
+	 *             The exception thrown by the part reader for the first file
+	 *             that failed, or an IOException if stdout cannot be written
+	 *             or the thread is interrupted
+	 */
+	public void print(List<String> names, List<Path> filePaths, OutputStream stdout) throws Exception {
+		int numFiles = filePaths.size();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(MAX_THREADS, numFiles)),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "multi-file-reader");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		Budget budget = new Budget(maxBufferedBytes);
+		List<PartBuffer> buffers = new ArrayList<PartBuffer>(numFiles);
+		List<Future<Void>> parts = new ArrayList<Future<Void>>(numFiles);
+		try {
+			for (int i = 0; i < numFiles; i++) {
+				while (parts.size() < Math.min(numFiles, i + MAX_PREFETCH + 1)) {
+					PartBuffer buffer = new PartBuffer(budget);
+					buffers.add(buffer);
+					parts.add(executor.submit(readTask(filePaths.get(parts.size()), buffer)));
+				}
+				if (i > 0) {
+					stdout.write(NEW_LINE_BYTES);
+				}
+				stdout.write(("==> " + names.get(i) + " <==").getBytes(StandardCharsets.UTF_8));
+				stdout.write(NEW_LINE_BYTES);
+				buffers.get(i).passTo(stdout);
+				awaitPart(parts.get(i));
+				buffers.set(i, null);
+				parts.set(i, null);
+			}
+			stdout.flush();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Callable<Void> readTask(final Path filePath, final PartBuffer buffer) {
+		return new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				partReader.readPart(filePath, buffer);
+				return null;
+			}
+		};
+	}
+
+	private static void awaitPart(Future<Void> part) throws Exception {
+		try {
+			part.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while reading files");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Number of bytes held by all parts read ahead. Guarded by its own
+	 * monitor, which the part buffers also wait on.
+	 */
+	private static class Budget {
+		private final long maxBytes;
+		private long usedBytes;
+
+		Budget(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+	}
+
+	/**
+	 * Receives the part of one file. Until {@link #passTo(OutputStream)} is
+	 * called the bytes are held in memory as the chunks they were written in,
+	 * afterwards they are written straight through.
+	 */
+	private static class PartBuffer extends OutputStream {
+		private final Budget budget;
+		private final List<byte[]> held = new ArrayList<byte[]>();
+		private long heldBytes;
+		private OutputStream target;
+
+		PartBuffer(Budget budget) {
+			this.budget = budget;
+		}
+
+		@Override
+		public void write(int value) throws IOException {
+			write(new byte[] { (byte) value }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int off, int len) throws IOException {
+			OutputStream out;
+			synchronized (budget) {
+				long cost = (long) len + CHUNK_OVERHEAD;
+				while (target == null && budget.usedBytes + cost > budget.maxBytes) {
+					try {
+						budget.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException("Interrupted while reading files");
+					}
+				}
+				if (target == null) {
+					held.add(Arrays.copyOfRange(bytes, off, off + len));
+					heldBytes += cost;
+					budget.usedBytes += cost;
+					return;
+				}
+				out = target;
+			}
+			out.write(bytes, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			OutputStream out;
+			synchronized (budget) {
+				out = target;
+			}
+			if (out != null) {
+				out.flush();
+			}
+		}
+
+		/**
+		 * Writes the bytes held so far to out and sends the rest of the part
+		 * straight to it.
+		 */
+		void passTo(OutputStream out) throws IOException {
+			synchronized (budget) {
+				try {
+					for (byte[] chunk : held) {
+						out.write(chunk);
+					}
+				} finally {
+					budget.usedBytes -= heldBytes;
+					held.clear();
+					heldBytes = 0;
+					target = out;
+					budget.notifyAll();
+				}
+			}
+		}
+	}
+}
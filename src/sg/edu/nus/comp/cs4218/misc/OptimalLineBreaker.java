@@ -0,0 +1,137 @@
+package sg.edu.nus.comp.cs4218.misc;
+
+/**
+ * Chooses where to break a paragraph of words into lines so that the lines
+ * are as even as possible, in the style of Knuth and Plass. Every line but the
+ * last costs the square of the number of unused columns, the last line is
+ * free, and the breaks with the least total cost are chosen.
+ *
+ * The cost of a line only depends on its length and grows convexly with it,
+ * so the best start for a line ending at word j never moves backwards as j
+ * grows. The dynamic programme therefore keeps a queue of candidate starts,
+ * each owning the range of ends it is best for, and finds where a new
+ * candidate takes over with a binary search. That takes O(n log n) time for n
+ * words instead of O(n^2).
+ */
+public final class OptimalLineBreaker {
+
+	private OptimalLineBreaker() {
+	}
+
+	/**
+	 * Finds the breaks for a paragraph.
+	 *
+	 * @param lengths
+	 *            lengths of the words; none may be longer than maxWidth
+	 * @param count
+	 *            number of words of lengths to use
+	 * @param maxWidth
+	 *            longest allowed line, counting one space between words
+	 * @return the index of the first word of every line after the first, in
+	 *         order, followed by count
+	 */
+	public static int[] findBreaks(int[] lengths, int count, int maxWidth) {
+		if (count == 0) {
+			return new int[0];
+		}
+		long[] prefix = new long[count + 1];
+		for (int k = 0; k < count; k++) {
+			prefix[k + 1] = prefix[k] + lengths[k] + 1;
+		}
+		double[] best = new double[count + 1];
+		int[] start = new int[count + 1];
+		int[] queueCand = new int[count + 1];
+		int[] queueFrom = new int[count + 1];
+		int head = 0;
+		int tail = 0;
+		queueCand[tail] = 0;
+		queueFrom[tail++] = 1;
+		for (int j = 1; j < count; j++) {
+			while (tail - head > 1 && queueFrom[head + 1] <= j) {
+				head++;
+			}
+			start[j] = queueCand[head];
+			best[j] = cost(best, prefix, start[j], j, maxWidth);
+			tail = addCandidate(j, count, best, prefix, maxWidth, queueCand, queueFrom, head, tail);
+		}
+		start[count] = lastLineStart(best, prefix, count, maxWidth);
+
+		int numLines = 0;
+		for (int end = count; end > 0; end = start[end]) {
+			numLines++;
+		}
+		int[] breaks = new int[numLines];
+		int idx = numLines;
+		for (int end = count; end > 0; end = start[end]) {
+			breaks[--idx] = end;
+		}
+		return breaks;
+	}
+
+	/**
+	 * Adds j as a candidate start, dropping the candidates it beats everywhere
+	 * they are still in use.
+	 *
+	 * @return the new tail of the queue
+	 */
+	private static int addCandidate(int j, int count, double[] best, long[] prefix, int maxWidth, int[] queueCand,
+			int[] queueFrom, int head, int tail) {
+		int newTail = tail;
+		while (newTail > head) {
+			int last = queueCand[newTail - 1];
+			int from = Math.max(queueFrom[newTail - 1], j + 1);
+			if (cost(best, prefix, j, from, maxWidth) <= cost(best, prefix, last, from, maxWidth)) {
+				newTail--;
+			} else {
+				break;
+			}
+		}
+		if (newTail == head) {
+			queueCand[newTail] = j;
+			queueFrom[newTail++] = j + 1;
+			return newTail;
+		}
+		int last = queueCand[newTail - 1];
+		int low = Math.max(queueFrom[newTail - 1], j + 1) + 1;
+		int high = count;
+		if (low > high || cost(best, prefix, j, high, maxWidth) > cost(best, prefix, last, high, maxWidth)) {
+			return newTail;
+		}
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (cost(best, prefix, j, mid, maxWidth) <= cost(best, prefix, last, mid, maxWidth)) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		queueCand[newTail] = j;
+		queueFrom[newTail++] = low;
+		return newTail;
+	}
+
+	/**
+	 * The best start for the last line, which costs nothing if it fits.
+	 */
+	private static int lastLineStart(double[] best, long[] prefix, int count, int maxWidth) {
+		int bestStart = count - 1;
+		for (int i = count - 1; i >= 0 && prefix[count] - prefix[i] - 1 <= maxWidth; i--) {
+			if (best[i] <= best[bestStart]) {
+				bestStart = i;
+			}
+		}
+		return bestStart;
+	}
+
+	/**
+	 * Total cost of the best breaks of the first i words followed by a line
+	 * from word i up to word j.
+	 */
+	private static double cost(double[] best, long[] prefix, int i, int j, int maxWidth) {
+		long slack = maxWidth - (prefix[j] - prefix[i] - 1);
+		if (slack < 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return best[i] + (double) slack * slack;
+	}
+}
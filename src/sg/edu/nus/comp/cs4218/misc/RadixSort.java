@@ -0,0 +1,127 @@
+package sg.edu.nus.comp.cs4218.misc;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import sg.edu.nus.comp.cs4218.exception.SortException;
+
+/**
+ * Most-significant-digit radix sort of lines in the natural order of
+ * {@link MergeSort#customCompare(String, String)}. Lines are distributed on
+ * the bytes of their collation keys, see {@link MergeSort#collationKey(String)},
+ * which are read straight from the characters instead of being materialised.
+ * Buckets of at most {@link #INSERTION_SORT_THRESHOLD} lines are finished with
+ * an insertion sort.
+ *
+ * Distribution is stable and buckets are processed from an explicit stack, so
+ * the result equals that of {@link MergeSort} and very long common prefixes
+ * cannot overflow the call stack.
+ */
+public final class RadixSort {
+	public static final int INSERTION_SORT_THRESHOLD = 32;
+	private static final int RADIX = 256;
+	private static final int BYTE_SHIFT = 8;
+	private static final int BYTE_MASK = 0xFF;
+
+	private RadixSort() {
+	}
+
+	/**
+	 * Sorts a range of lines in natural order.
+	 * 
+	 * @param toSort
+	 *            array to be sorted
+	 * @param pos1
+	 *            starting position of the range
+	 * @param pos2
+	 *            ending position of the range
+	 * @return the sorted array
+	 * @throws SortException
+	 *             If the array is null or the range is outside of it
+	 */
+	public static String[] sort(String[] toSort, int pos1, int pos2) throws SortException {
+		if (toSort == null) {
+			throw new SortException("Array not found");
+		}
+		if (pos1 < 0 || pos2 > toSort.length - 1) {
+			throw new SortException("Postion cannot be negative or beyond array's size");
+		}
+		String[] aux = new String[toSort.length];
+		int[] keyBytes = new int[toSort.length];
+		Deque<int[]> buckets = new ArrayDeque<int[]>();
+		buckets.push(new int[] { pos1, pos2, 0 });
+		while (!buckets.isEmpty()) {
+			int[] bucket = buckets.pop();
+			int front = bucket[0];
+			int back = bucket[1];
+			int depth = bucket[2];
+			if (back - front < INSERTION_SORT_THRESHOLD) {
+				insertionSort(toSort, front, back);
+			} else {
+				distribute(toSort, aux, keyBytes, front, back, depth, buckets);
+			}
+		}
+		return toSort;
+	}
+
+	/**
+	 * Counting-sorts a bucket on the key byte at the given depth and pushes
+	 * the resulting buckets to be sorted on the next byte. Lines that end
+	 * before the depth are equal and come first. The key bytes are read once
+	 * into keyBytes.
+	 */
+	private static void distribute(String[] toSort, String[] aux, int[] keyBytes, int front, int back, int depth,
+			Deque<int[]> buckets) {
+		int[] count = new int[RADIX + 2];
+		for (int i = front; i <= back; i++) {
+			keyBytes[i] = keyByte(toSort[i], depth) + 1;
+			count[keyBytes[i] + 1]++;
+		}
+		if (count[keyBytes[front] + 1] == back - front + 1) {
+			// all lines share this byte, move on to the next one
+			if (keyBytes[front] > 0) {
+				buckets.push(new int[] { front, back, depth + 1 });
+			}
+			return;
+		}
+		for (int r = 0; r < RADIX + 1; r++) {
+			count[r + 1] += count[r];
+		}
+		for (int i = front; i <= back; i++) {
+			aux[count[keyBytes[i]]++] = toSort[i];
+		}
+		System.arraycopy(aux, 0, toSort, front, back - front + 1);
+		for (int r = 0; r < RADIX; r++) {
+			int start = front + count[r];
+			int end = front + count[r + 1] - 1;
+			if (start < end) {
+				buckets.push(new int[] { start, end, depth + 1 });
+			}
+		}
+	}
+
+	/**
+	 * Returns the byte of the line's collation key at the given depth, or -1
+	 * if the key is shorter.
+	 */
+	private static int keyByte(String line, int depth) {
+		int index = depth >>> 1;
+		if (index >= line.length()) {
+			return -1;
+		}
+		char weight = MergeSort.weight(line.charAt(index));
+		return (depth & 1) == 0 ? weight >>> BYTE_SHIFT : weight & BYTE_MASK;
+	}
+
+	private static void insertionSort(String[] toSort, int front, int back) {
+		for (int i = front + 1; i <= back; i++) {
+			String current = toSort[i];
+			int j = i - 1;
+			while (j >= front && MergeSort.customCompare(toSort[j], current) > 0) {
+				toSort[j + 1] = toSort[j];
+				j--;
+			}
+			toSort[j + 1] = current;
+		}
+	}
+}
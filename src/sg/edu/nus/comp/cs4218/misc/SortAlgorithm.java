@@ -0,0 +1,70 @@
+package sg.edu.nus.comp.cs4218.misc;
+
+import sg.edu.nus.comp.cs4218.exception.SortException;
+
+/**
+ * The algorithms the sort application can sort an in-memory chunk of lines
+ * with. All of them give the same stable order.
+ */
+public enum SortAlgorithm {
+	/**
+	 * Parallel merge sort, see {@link MergeSort}.
+	 */
+	MERGE("merge") {
+		@Override
+		public String[] sort(String[] toSort, boolean numFlag) throws SortException {
+			return new MergeSort(numFlag, true).mergeSort(toSort, 0, toSort.length - 1);
+		}
+	},
+
+	/**
+	 * MSD radix sort on collation keys, see {@link RadixSort}. The numeric
+	 * order of -n is not a byte order, so it falls back to merge sort.
+	 */
+	RADIX("radix") {
+		@Override
+		public String[] sort(String[] toSort, boolean numFlag) throws SortException {
+			if (numFlag) {
+				return MERGE.sort(toSort, true);
+			}
+			return RadixSort.sort(toSort, 0, toSort.length - 1);
+		}
+	};
+
+	private final String optionName;
+
+	SortAlgorithm(String optionName) {
+		this.optionName = optionName;
+	}
+
+	/**
+	 * Sorts the lines in place.
+	 * 
+	 * @param toSort
+	 *            lines to be sorted
+	 * @param numFlag
+	 *            true to sort in alphanum order, false for natural order
+	 * @return the sorted array
+	 * @throws SortException
+	 *             If the lines cannot be sorted
+	 */
+	public abstract String[] sort(String[] toSort, boolean numFlag) throws SortException;
+
+	/**
+	 * Returns the algorithm with the given name as used on the command line.
+	 * 
+	 * @param optionName
+	 *            "merge" or "radix"
+	 * @return the algorithm
+	 * @throws SortException
+	 *             If there is no algorithm with that name
+	 */
+	public static SortAlgorithm fromOptionName(String optionName) throws SortException {
+		for (SortAlgorithm algorithm : values()) {
+			if (algorithm.optionName.equals(optionName)) {
+				return algorithm;
+			}
+		}
+		throw new SortException("Invalid sort algorithm: " + optionName);
+	}
+}
@@ -1,6 +1,11 @@
 package sg.edu.nus.comp.cs4218.misc;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -16,165 +21,43 @@ public final class SortHelper {
 	private static final int ZERO = 0;
 	private static final int TWO = 2;
 	private static final int THREE = 3;
+	private static final String BUFFER_SIZE_FLAG = "-S";
+	private static final String TEMP_DIR_FLAG = "-T";
+	private static final String ALGORITHM_FLAG = "-A";
+	private static final String TEMP_DIR_PROPERTY = "java.io.tmpdir";
+	private static final String SIZE_UNITS = "bKMGT";
+	private static final long KILOBYTE = 1024;
 
 	private SortHelper() {
 	}
 
 	/**
 	 * this method separates strings into a list based on the combination type
-	 * given
+	 * given. Every line is classified in a single pass.
 	 * 
 	 * @param combinationType
 	 *            indicate the number of combination in a string
 	 * @param toSort
 	 *            input array to be sorted
-	 * @return List<String> a sorted list of strings
+	 * @return List<String> the lines of that combination type in input order
 	 */
 	public static List<String> separateBasedOnType(int combinationType, String... toSort) {
-		int simpleCount = 0, capitalCount = 0, specialCount = 0, numberCount = 0;
-		List<String> resultList = new ArrayList<String>();
-		for (int i = 0; i < toSort.length; i++) {
-			String currentLine = toSort[i];
-			simpleCount = SortTypeSeparator.getSimpleCharInLineCount(currentLine);
-			capitalCount = SortTypeSeparator.getCapitalCharInLineCount(currentLine);
-			specialCount = SortTypeSeparator.getSpecialCharInLineCount(currentLine);
-			numberCount = SortTypeSeparator.getNumberCharInLineCount(currentLine);
-
-			if (combinationType == ONE) {
-				separateFromOneType(simpleCount, capitalCount, specialCount, numberCount, resultList, currentLine);
-			} else if (combinationType == TWO) {
-				separateFromTwoType(simpleCount, capitalCount, specialCount, numberCount, resultList, currentLine);
-			} else if (combinationType == THREE) {
-				separateFromThreeType(simpleCount, capitalCount, specialCount, numberCount, resultList, currentLine);
-			} else {
-				separateFromFourType(simpleCount, capitalCount, specialCount, numberCount, resultList, currentLine);
-			}
-
-		}
-		return resultList;
-	}
-
-	/**
-	 * This method adds to a list only if the string has 4 different
-	 * combinations
-	 * 
-	 * @param simpleCount
-	 *            count of lowercase characters in a string
-	 * @param capitalCount
-	 *            count of uppercase characters in a string
-	 * @param specialCount
-	 *            count of special characters in a string
-	 * @param numberCount
-	 *            count of digits in a string
-	 * @param resultList
-	 *            line would be added to list only it matches the conditions
-	 * @param currentLine
-	 *            input string
-	 */
-	private static void separateFromFourType(int simpleCount, int capitalCount, int specialCount, int numberCount,
-			List<String> resultList, String currentLine) {
-		if (simpleCount != 0 && capitalCount != 0 && numberCount != 0 && specialCount != 0
-				&& (simpleCount + capitalCount + numberCount + specialCount) == currentLine.length()) {
-			resultList.add(currentLine);
-		}
-	}
-
-	/**
-	 * This method adds to a list only if the string has 3 different
-	 * combinations
-	 * 
-	 * @param simpleCount
-	 *            count of lowercase characters in a string
-	 * @param capitalCount
-	 *            count of uppercase characters in a string
-	 * @param specialCount
-	 *            count of special characters in a string
-	 * @param numberCount
-	 *            count of digits in a string
-	 * @param resultList
-	 *            line would be added to list only it matches the conditions
-	 * @param currentLine
-	 *            input string
-	 */
-	private static void separateFromThreeType(int simpleCount, int capitalCount, int specialCount, int numberCount,
-			List<String> resultList, String currentLine) {
-		if (simpleCount != 0 && capitalCount != 0 && numberCount != 0
-				&& (simpleCount + capitalCount + numberCount) == currentLine.length()) {
-			resultList.add(currentLine);
-		} else if (simpleCount != 0 && capitalCount != 0 && specialCount != 0
-				&& (simpleCount + capitalCount + specialCount) == currentLine.length()) {
-			resultList.add(currentLine);
-		} else if (simpleCount != 0 && numberCount != 0 && specialCount != 0
-				&& (simpleCount + numberCount + specialCount) == currentLine.length()) {
-			resultList.add(currentLine);
-		} else if (capitalCount != 0 && numberCount != 0 && specialCount != 0
-				&& (capitalCount + numberCount + specialCount) == currentLine.length()) {
-			resultList.add(currentLine);
-		}
-	}
-
-	/**
-	 * This method adds to a list only if the string has 2 different
-	 * combinations
-	 * 
-	 * @param simpleCount
-	 *            count of lowercase characters in a string
-	 * @param capitalCount
-	 *            count of uppercase characters in a string
-	 * @param specialCount
-	 *            count of special characters in a string
-	 * @param numberCount
-	 *            count of digits in a string
-	 * @param resultList
-	 *            line would be added to list only it matches the conditions
-	 * @param currentLine
-	 *            input string
-	 */
-	private static void separateFromTwoType(int simpleCount, int capitalCount, int specialCount, int numberCount,
-			List<String> resultList, String currentLine) {
-		if (simpleCount != 0 && capitalCount != 0 && (simpleCount + capitalCount) == currentLine.length()) {
-			resultList.add(currentLine);
-		} else if (simpleCount != 0 && numberCount != 0 && (simpleCount + numberCount) == currentLine.length()) {
-			resultList.add(currentLine);
-		} else if (simpleCount != 0 && specialCount != 0 && (simpleCount + specialCount) == currentLine.length()) {
-			resultList.add(currentLine);
-		} else if (capitalCount != 0 && numberCount != 0 && (capitalCount + numberCount) == currentLine.length()) {
-			resultList.add(currentLine);
-		} else if (capitalCount != 0 && specialCount != 0 && (capitalCount + specialCount) == currentLine.length()) {
-			resultList.add(currentLine);
-		} else if (numberCount != 0 && specialCount != 0 && (numberCount + specialCount) == currentLine.length()) {
-			resultList.add(currentLine);
-		}
+		return separateBasedOnType(combinationType, LineClassIndex.of(toSort));
 	}
 
 	/**
-	 * This method adds to a list only if the string has 1 different
-	 * combinations
+	 * this method returns the lines of the combination type given from an
+	 * index built once, so that several combination types of the same lines
+	 * can be asked for without classifying them again.
 	 * 
-	 * @param simpleCount
-	 *            count of lowercase characters in a string
-	 * @param capitalCount
-	 *            count of uppercase characters in a string
-	 * @param specialCount
-	 *            count of special characters in a string
-	 * @param numberCount
-	 *            count of digits in a string
-	 * @param resultList
-	 *            line would be added to list only it matches the conditions
-	 * @param currentLine
-	 *            input string
+	 * @param combinationType
+	 *            indicate the number of combination in a string
+	 * @param index
+	 *            the classified input lines
+	 * @return List<String> the lines of that combination type in input order
 	 */
-	private static void separateFromOneType(int simpleCount, int capitalCount, int specialCount, int numberCount,
-			List<String> resultList, String currentLine) {
-		if (simpleCount == currentLine.length()) {
-			resultList.add(currentLine);
-		} else if (capitalCount == currentLine.length()) {
-			resultList.add(currentLine);
-		} else if (numberCount == currentLine.length()) {
-			resultList.add(currentLine);
-		} else if (specialCount == currentLine.length()) {
-			resultList.add(currentLine);
-		}
+	public static List<String> separateBasedOnType(int combinationType, LineClassIndex index) {
+		return new ArrayList<String>(index.getLines(combinationType));
 	}
 
 	/**
@@ -210,42 +93,111 @@ public final class SortHelper {
 	}
 
 	/**
-	 * This method initiates the sort process by calling helper methods to read
-	 * and sort the input.
+	 * This method initiates the sort process by parsing the options, then
+	 * streaming the input through an external sort and writing the result.
+	 * Options are "-n" for alphanum order, "-S SIZE" for the memory budget,
+	 * "-T DIR" for the directory of temporary files and "-A merge|radix" for
+	 * the in-memory sort algorithm. They must come before the files; if no
+	 * files are given, stdin is sorted.
 	 * 
 	 * @param args
+	 *            options followed by the files to sort
 	 * @param stdin
-	 * @return
+	 *            input read when no files are given
+	 * @param stdout
+	 *            stream the sorted lines are written to
 	 * @throws SortException
+	 *             If an option or file is invalid, or the input cannot be
+	 *             read, sorted or written.
 	 */
-	public static String[] sortProcess(String[] args, InputStream stdin) throws SortException {
+	public static void sortProcess(String[] args, InputStream stdin, OutputStream stdout) throws SortException {
 		Path currentDir = Paths.get(Environment.currentDirectory);
+		String[] params = args == null ? new String[ZERO] : args;
 		int filePosition = ZERO;
-		String[] toSort = null;
 		boolean numFlag = false;
-
-		if (args == null || args.length == ZERO) {
-			toSort = SortApplication.readFromStdinAndWriteToStringArray(stdin);
-		} else if (args.length == ONE) {
-			filePosition = ZERO;
-			if (SortApplication.isNumberCommandFormat(args)) {
+		long memoryBudget = ExternalSort.DEFAULT_MEMORY_BUDGET;
+		Path tempDir = Paths.get(System.getProperty(TEMP_DIR_PROPERTY));
+		SortAlgorithm algorithm = SortAlgorithm.MERGE;
+
+		while (filePosition < params.length) {
+			String option = params[filePosition];
+			boolean hasValue = filePosition + ONE < params.length;
+			if (SortApplication.isNumberCommandFormat(option)) {
 				numFlag = true;
-				toSort = SortApplication.readFromStdinAndWriteToStringArray(stdin);
+				filePosition++;
+			} else if (BUFFER_SIZE_FLAG.equals(option) && hasValue) {
+				memoryBudget = parseMemoryBudget(params[filePosition + ONE]);
+				filePosition += TWO;
+			} else if (TEMP_DIR_FLAG.equals(option) && hasValue) {
+				tempDir = currentDir.resolve(params[filePosition + ONE]);
+				if (!Files.isDirectory(tempDir)) {
+					throw new SortException("Invalid temporary directory");
+				}
+				filePosition += TWO;
+			} else if (ALGORITHM_FLAG.equals(option) && hasValue) {
+				algorithm = SortAlgorithm.fromOptionName(params[filePosition + ONE]);
+				filePosition += TWO;
 			} else {
-				toSort = SortApplication.getFileContents(args, currentDir, filePosition);
+				break;
 			}
-		} else if (args.length >= SortApplication.MAX_LENGTH) {
-			if (SortApplication.isNumberCommandFormat(args)) {
-				numFlag = true;
-				filePosition = ONE;
+		}
+
+		try (ExternalSort sorter = new ExternalSort(numFlag, algorithm, memoryBudget, tempDir)) {
+			if (filePosition == params.length) {
+				if (stdin == null) {
+					throw new SortException("Null Pointer Exception");
+				}
+				addLines(stdin, sorter);
+			} else {
+				for (Path filePath : SortApplication.getFilePaths(params, currentDir, filePosition)) {
+					try (InputStream fileInStream = Files.newInputStream(filePath)) {
+						addLines(fileInStream, sorter);
+					} catch (IOException e) {
+						throw new SortException("IOException", e);
+					}
+				}
 			}
-			toSort = SortApplication.getFileContents(args, currentDir, filePosition);
+			if (stdout == null) {
+				throw new SortException("stdout is not present");
+			}
+			sorter.writeTo(stdout);
+		}
+	}
 
+	/**
+	 * Parses a memory budget such as "512K" or "2G". A number without a unit
+	 * is in kilobytes, as in GNU sort.
+	 * 
+	 * @param size
+	 *            number optionally followed by one of the units b, K, M, G, T
+	 * @return the budget in bytes
+	 * @throws SortException
+	 *             If the size is not a positive number with a known unit
+	 */
+	static long parseMemoryBudget(String size) throws SortException {
+		int unitIndex = size.isEmpty() ? -1 : SIZE_UNITS.indexOf(size.charAt(size.length() - 1));
+		String number = unitIndex == -1 ? size : size.substring(ZERO, size.length() - 1);
+		long multiplier = unitIndex == -1 ? KILOBYTE : 1L << (10 * unitIndex);
+		try {
+			long value = Long.parseLong(number);
+			if (value <= ZERO || value > Long.MAX_VALUE / multiplier) {
+				throw new SortException("Invalid buffer size: " + size);
+			}
+			return value * multiplier;
+		} catch (NumberFormatException e) {
+			throw new SortException("Invalid buffer size: " + size, e);
 		}
-		MergeSort mergeSort = new MergeSort(numFlag);
-		if (toSort != null) {
-			mergeSort.mergeSort(toSort, ZERO, toSort.length - 1);
+	}
+
+	private static void addLines(InputStream input, ExternalSort sorter) throws SortException {
+		BufferedReader buffReader = new BufferedReader(new InputStreamReader(input));
+		String line;
+		try {
+			while ((line = buffReader.readLine()) != null) {
+				sorter.add(line);
+			}
+		} catch (IOException e) {
+			throw new SortException("Exception caught", e);
 		}
-		return toSort;
 	}
 }
@@ -1,81 +1,58 @@
 package sg.edu.nus.comp.cs4218.misc;
 
 public final class SortTypeSeparator {
-	private SortTypeSeparator() {
-	}
-
+	public static final int SIMPLE = 1;
+	public static final int CAPITAL = 2;
+	public static final int NUMBER = 4;
+	public static final int SPECIAL = 8;
 	/**
-	 * Counts lower case letters in a string
-	 * 
-	 * @param currentLine
-	 *            input line
-	 * @return int count of lower case letters
+	 * Letters that are neither lower nor upper case, a line containing one
+	 * belongs to no combination
 	 */
-	static int getSimpleCharInLineCount(String currentLine) {
-		int count = 0;
-		for (int j = 0; j < currentLine.length(); j++) {
-			int currentChar = currentLine.charAt(j);
-			if (Character.isLetter(currentChar) && Character.isLowerCase(currentChar)) {
-				count++;
-			}
-		}
+	public static final int OTHER = 16;
 
-		return count;
+	private SortTypeSeparator() {
 	}
 
 	/**
-	 * Counts uppercase letters in a string
+	 * Classifies every character of a line in a single pass
 	 * 
 	 * @param currentLine
 	 *            input line
-	 * @return int count of uppercase leters
+	 * @return int mask of the classes of characters present in the line, 0 for
+	 *         an empty line
 	 */
-	static int getCapitalCharInLineCount(String currentLine) {
-		int count = 0;
+	static int classify(String currentLine) {
+		int mask = 0;
 		for (int j = 0; j < currentLine.length(); j++) {
 			char currentChar = currentLine.charAt(j);
-			if (Character.isLetter(currentChar) && Character.isUpperCase(currentChar)) {
-				count++;
-			}
-		}
-
-		return count;
-	}
-
-	/**
-	 * Get a count of digits present in a string /**
-	 * 
-	 * @param currentLine
-	 *            input line
-	 * @return int a count of digits
-	 */
-	static int getNumberCharInLineCount(String currentLine) {
-		int count = 0;
-		for (int j = 0; j < currentLine.length(); j++) {
-			int currentChar = currentLine.charAt(j);
 			if (Character.isDigit(currentChar)) {
-				count++;
+				mask |= NUMBER;
+			} else if (!Character.isLetter(currentChar)) {
+				mask |= SPECIAL;
+			} else if (Character.isLowerCase(currentChar)) {
+				mask |= SIMPLE;
+			} else if (Character.isUpperCase(currentChar)) {
+				mask |= CAPITAL;
+			} else {
+				mask |= OTHER;
 			}
 		}
-
-		return count;
+		return mask;
 	}
 
 	/**
-	 * count the number of special characters in a string
+	 * Returns the number of different combinations in a line with the given
+	 * mask, i.e. the combination type it is sorted with
 	 * 
-	 * @param string
-	 *            input line
-	 * @return int a count of special characters
+	 * @param mask
+	 *            mask of the classes of characters in the line
+	 * @return int from 1 to 4, or 0 if the line belongs to no combination
 	 */
-	static int getSpecialCharInLineCount(String currentLine) {
-		int count = 0;
-		for (int j = 0; j < currentLine.length(); j++) {
-			char currentChar = currentLine.charAt(j);
-			if (!Character.isDigit(currentChar) && !Character.isLetter(currentChar)) {
-				count++;
-			}
+	static int combinationType(int mask) {
+		if ((mask & OTHER) != 0) {
+			return 0;
 		}
-		return count;
+		return mask == 0 ? 1 : Integer.bitCount(mask);
 	}
 }
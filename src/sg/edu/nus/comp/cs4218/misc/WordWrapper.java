@@ -0,0 +1,203 @@
+package sg.edu.nus.comp.cs4218.misc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps the words read from a stream into lines for fmt. Words are separated
+ * by spaces and line terminators, and are filled into lines greedily: a word
+ * goes on the current line if the line stays shorter than the wrap width,
+ * otherwise the line is written out first. A word longer than the wrap width
+ * is written on a line of its own.
+ *
+ * Each line is written as soon as it is full, so only the line being filled
+ * and the word being read are held in memory.
+ *
+ * In optimal mode the lines are balanced with {@link OptimalLineBreaker}
+ * instead. Words are then held back in a window of up to
+ * {@link #WINDOW_WORDS} words; when the window fills, the lines covering its
+ * first half are written and the rest is carried over, so the breaks only
+ * look that far ahead. A word too long for any line ends the paragraph.
+ */
+public class WordWrapper {
+	public static final int WINDOW_WORDS = 4096;
+	private static final int BUFFER_SIZE = 8 * 1024;
+	private static final char NO_BREAK_SPACE = (char) 160;
+	private static final String NEW_LINE = System.lineSeparator();
+
+	private final Writer out;
+	private final int wrapWidth;
+	private final boolean optimal;
+	private final List<String> window = new ArrayList<String>();
+	private final StringBuilder line = new StringBuilder();
+	private final StringBuilder word = new StringBuilder();
+	private boolean wordVisible;
+	private int pendingBlankWords;
+	private boolean anyWord;
+
+	/**
+	 * Creates a wrapper writing to the given writer.
+	 *
+	 * @param out
+	 *            writer the wrapped lines are written to
+	 * @param wrapWidth
+	 *            lines are kept shorter than this many characters
+	 */
+	public WordWrapper(Writer out, int wrapWidth) {
+		this(out, wrapWidth, false);
+	}
+
+	/**
+	 * Creates a wrapper writing to the given writer.
+	 *
+	 * @param out
+	 *            writer the wrapped lines are written to
+	 * @param wrapWidth
+	 *            lines are kept shorter than this many characters
+	 * @param optimal
+	 *            true to balance the lines, false to fill them greedily
+	 */
+	public WordWrapper(Writer out, int wrapWidth, boolean optimal) {
+		this.out = out;
+		this.wrapWidth = wrapWidth;
+		this.optimal = optimal;
+	}
+
+	/**
+	 * Reads all words from the reader and wraps them. Can be called again to
+	 * continue with more input.
+	 *
+	 * @param in
+	 *            reader to read words from
+	 * @throws IOException
+	 *             If there is an error reading in or writing out
+	 */
+	public void wrap(Reader in) throws IOException {
+		char[] buffer = new char[BUFFER_SIZE];
+		int charsRead;
+		while ((charsRead = in.read(buffer)) != -1) {
+			for (int i = 0; i < charsRead; i++) {
+				char chr = buffer[i];
+				if (chr == ' ' || chr == '\n' || chr == '\r') {
+					endWord();
+				} else {
+					word.append(chr);
+					wordVisible |= chr > ' ';
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the last line, followed by a line separator, if any word was
+	 * read.
+	 *
+	 * @throws IOException
+	 *             If there is an error writing out
+	 */
+	public void finish() throws IOException {
+		endWord();
+		if (anyWord) {
+			if (window.isEmpty()) {
+				out.write(line.toString());
+				out.write(NEW_LINE);
+			} else {
+				writeWindow(window.size());
+			}
+		}
+		line.setLength(0);
+		anyWord = false;
+		pendingBlankWords = 0;
+	}
+
+	/**
+	 * Hands the word just read to the filler. Blank words, made only of
+	 * control characters, count as empty words between two visible words but
+	 * are dropped at the end of the input, as if the input had been trimmed.
+	 */
+	private void endWord() throws IOException {
+		if (word.length() == 0) {
+			return;
+		}
+		String trimmedWord = word.toString().replace(NO_BREAK_SPACE, ' ').trim();
+		word.setLength(0);
+		if (!wordVisible) {
+			pendingBlankWords++;
+			return;
+		}
+		wordVisible = false;
+		for (; pendingBlankWords > 0; pendingBlankWords--) {
+			addWord("");
+		}
+		addWord(trimmedWord);
+		anyWord = true;
+	}
+
+	private void addWord(String trimmedWord) throws IOException {
+		if (optimal) {
+			addWordToWindow(trimmedWord);
+			return;
+		}
+		while (line.length() > 0) {
+			if (line.length() + trimmedWord.length() + 1 < wrapWidth) {
+				line.append(' ').append(trimmedWord);
+				return;
+			}
+			out.write(line.toString());
+			out.write(NEW_LINE);
+			line.setLength(0);
+		}
+		if (wrapWidth < trimmedWord.length()) {
+			out.write(trimmedWord);
+			out.write(NEW_LINE);
+		} else {
+			line.append(trimmedWord);
+		}
+	}
+
+	private void addWordToWindow(String trimmedWord) throws IOException {
+		if (trimmedWord.length() >= wrapWidth) {
+			writeWindow(window.size());
+			out.write(trimmedWord);
+			out.write(NEW_LINE);
+			return;
+		}
+		window.add(trimmedWord);
+		if (window.size() >= WINDOW_WORDS) {
+			writeWindow(WINDOW_WORDS / 2);
+		}
+	}
+
+	/**
+	 * Breaks the words in the window optimally and writes the lines that end
+	 * within the given number of words, removing their words from the window.
+	 */
+	private void writeWindow(int limit) throws IOException {
+		int[] lengths = new int[window.size()];
+		for (int k = 0; k < lengths.length; k++) {
+			lengths[k] = window.get(k).length();
+		}
+		int[] breaks = OptimalLineBreaker.findBreaks(lengths, lengths.length, wrapWidth - 1);
+		int lineStart = 0;
+		for (int lineEnd : breaks) {
+			if (lineEnd > limit && lineStart > 0) {
+				break;
+			}
+			line.setLength(0);
+			for (int k = lineStart; k < lineEnd; k++) {
+				if (k > lineStart) {
+					line.append(' ');
+				}
+				line.append(window.get(k));
+			}
+			out.write(line.toString());
+			out.write(NEW_LINE);
+			lineStart = lineEnd;
+		}
+		line.setLength(0);
+		window.subList(0, lineStart).clear();
+	}
+}
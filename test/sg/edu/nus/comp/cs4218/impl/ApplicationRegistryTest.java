@@ -0,0 +1,107 @@
+package sg.edu.nus.comp.cs4218.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+
+import org.junit.Test;
+
+import sg.edu.nus.comp.cs4218.Application;
+import sg.edu.nus.comp.cs4218.ApplicationProvider;
+import sg.edu.nus.comp.cs4218.exception.ShellException;
+import sg.edu.nus.comp.cs4218.impl.app.CatApplication;
+
+public class ApplicationRegistryTest {
+
+	/**
+	 * Test whether a built-in application is looked up as one shared instance.
+	 */
+	@Test
+	public void testLookupBuiltIn() {
+		Application first = ApplicationRegistry.lookup("cat");
+		assertTrue(first instanceof CatApplication);
+		assertSame(first, ApplicationRegistry.lookup("cat"));
+	}
+
+	/**
+	 * Test whether unknown and null names are not found.
+	 */
+	@Test
+	public void testLookupUnknown() {
+		assertNull(ApplicationRegistry.lookup("apple"));
+		assertNull(ApplicationRegistry.lookup(null));
+	}
+
+	/**
+	 * Test whether an application registered through ServiceLoader can be run
+	 * by the shell.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testServiceLoaderProvider() throws Exception {
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		ShellImpl.runApp(StubApplicationProvider.NAME, new String[0], null, stdout);
+		assertEquals(StubApplicationProvider.OUTPUT, stdout.toString("UTF-8"));
+	}
+
+	/**
+	 * Test whether an application registered at runtime can be run and removed
+	 * again.
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = ShellException.class)
+	public void testRegisterAndUnregister() throws Exception {
+		String name = "registered";
+		ApplicationRegistry.register(name, ApplicationRegistry.lookup("echo"));
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		ShellImpl.runApp(name, new String[] { "hello" }, null, stdout);
+		assertEquals("hello" + System.lineSeparator(), stdout.toString("UTF-8"));
+
+		ApplicationRegistry.unregister(name);
+		ShellImpl.runApp(name, new String[0], null, stdout);
+	}
+
+	/**
+	 * Test whether providers following one that fails to load are still
+	 * registered.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRegisterAllSkipsBrokenProvider() throws Exception {
+		Iterator<ApplicationProvider> providers = new Iterator<ApplicationProvider>() {
+			private int position;
+
+			@Override
+			public boolean hasNext() {
+				return position < 2;
+			}
+
+			@Override
+			public ApplicationProvider next() {
+				position++;
+				if (position == 1) {
+					throw new ServiceConfigurationError("Provider not found");
+				}
+				return new StubApplicationProvider();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		ApplicationRegistry.unregister(StubApplicationProvider.NAME);
+		ApplicationRegistry.registerAll(providers);
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		ShellImpl.runApp(StubApplicationProvider.NAME, new String[0], null, stdout);
+		assertEquals(StubApplicationProvider.OUTPUT, stdout.toString("UTF-8"));
+	}
+}
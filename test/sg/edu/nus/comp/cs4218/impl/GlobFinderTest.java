@@ -1,9 +1,11 @@
 package sg.edu.nus.comp.cs4218.impl;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -75,4 +77,52 @@ public class GlobFinderTest {
 		nestedFinder.globFind(mockRelativePath);
 		assertTrue(nestedFinder.getResults().isEmpty());
 	}
+
+	/**
+	 * Test that find lists the matches of a single segment pattern in sorted
+	 * order.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFindSortsResults() throws Exception {
+		GlobFinder finder = new GlobFinder("*", mockRootDirectory);
+		assertEquals(Arrays.asList(mockRootDirectory + "/21-herb", mockRootDirectory + "/apple",
+				mockRootDirectory + "/quantum.txt", mockRootDirectory + "/tango"), finder.find());
+	}
+
+	/**
+	 * Test that find only returns matches at the depth of the pattern.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFindNestedPattern() throws Exception {
+		GlobFinder finder = new GlobFinder("*/*/*.txt", mockRootDirectory);
+		assertEquals(Arrays.asList(mockRootDirectory + "/21-herb/hola/Kappa.txt"), finder.find());
+	}
+
+	/**
+	 * Test that find searches every level below a segment containing **.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFindRecursivePattern() throws Exception {
+		GlobFinder finder = new GlobFinder("**/*.txt", mockRootDirectory);
+		assertEquals(Arrays.asList(mockRootDirectory + "/21-herb/hola/Kappa.txt",
+				mockRootDirectory + "/21-herb/sideload.txt", mockRootDirectory + "/apple/vadar.txt"), finder.find());
+	}
+
+	/**
+	 * Test that find handles a group whose alternatives span directories.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFindGroupAcrossDirectories() throws Exception {
+		GlobFinder finder = new GlobFinder("{apple/*.txt,21-herb/*/*}", mockRootDirectory);
+		assertEquals(Arrays.asList(mockRootDirectory + "/21-herb/hola/Kappa.txt", mockRootDirectory + "/apple/vadar.txt"),
+				finder.find());
+	}
 }
\ No newline at end of file
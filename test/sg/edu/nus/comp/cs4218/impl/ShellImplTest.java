@@ -1,10 +1,16 @@
 package sg.edu.nus.comp.cs4218.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -151,4 +157,132 @@ public class ShellImplTest {
 		mockShell.parseAndEvaluate(cmdline, mockOutput);
 		assertEquals(" | " + System.lineSeparator(), new String(mockOutput.toByteArray(), DEFAULT_ENCODING));
 	}
+
+	/**
+	 * Test whether parsing the same command line twice returns the cached
+	 * command and counts a cache hit.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testParseCached() throws Exception {
+		String cmdline = "echo parse cache test";
+		Command first = ShellImpl.parse(cmdline);
+		long hits = ShellImpl.getParseCache().getHits();
+		Command second = ShellImpl.parse(cmdline);
+		assertSame(first, second);
+		assertEquals(hits + 1, ShellImpl.getParseCache().getHits());
+	}
+
+	/**
+	 * Test whether globbing of a cached command line is evaluated again on
+	 * every execution.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testGlobEvaluatedPerExecution() throws Exception {
+		Path tempDir = Files.createTempDirectory("glob");
+		Path firstFile = Files.createFile(tempDir.resolve("first.txt"));
+		String cmdline = "echo " + tempDir.toAbsolutePath() + File.separator + "*.txt";
+		mockShell.parseAndEvaluate(cmdline, mockOutput);
+		assertEquals(firstFile.toString() + System.lineSeparator(),
+				new String(mockOutput.toByteArray(), DEFAULT_ENCODING));
+
+		Path secondFile = Files.createFile(tempDir.resolve("second.txt"));
+		mockOutput.reset();
+		mockShell.parseAndEvaluate(cmdline, mockOutput);
+		String output = new String(mockOutput.toByteArray(), DEFAULT_ENCODING);
+		assertTrue(output.contains(firstFile.toString()));
+		assertTrue(output.contains(secondFile.toString()));
+
+		Files.delete(firstFile);
+		Files.delete(secondFile);
+		Files.delete(tempDir);
+	}
+
+	/**
+	 * Test whether listing an unmodified directory again returns the cached
+	 * listing, and whether a change to its modification time lists it again.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDirectoryCacheReusesListing() throws Exception {
+		Path tempDir = Files.createTempDirectory("dircache");
+		Path firstFile = Files.createFile(tempDir.resolve("first.txt"));
+		FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+		Files.setLastModifiedTime(tempDir, past);
+		assertSame(ShellImpl.getDirectoryCache().list(tempDir), ShellImpl.getDirectoryCache().list(tempDir));
+
+		Path secondFile = Files.createFile(tempDir.resolve("second.txt"));
+		Files.setLastModifiedTime(tempDir, FileTime.fromMillis(past.toMillis() + 1000));
+		assertEquals(2, ShellImpl.getDirectoryCache().list(tempDir).size());
+
+		Files.delete(firstFile);
+		Files.delete(secondFile);
+		Files.delete(tempDir);
+	}
+
+	/**
+	 * Test whether a file created by an output redirection is matched by a
+	 * glob even if the modification time of its directory does not change.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOutputRedirInvalidatesDirectoryCache() throws Exception {
+		Path tempDir = Files.createTempDirectory("dircache");
+		Path firstFile = Files.createFile(tempDir.resolve("first.txt"));
+		Path secondFile = tempDir.resolve("second.txt");
+		FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+		Files.setLastModifiedTime(tempDir, past);
+		String cmdline = "echo " + tempDir.toAbsolutePath() + File.separator + "*.txt";
+		mockShell.parseAndEvaluate(cmdline, mockOutput);
+		assertFalse(new String(mockOutput.toByteArray(), DEFAULT_ENCODING).contains(secondFile.toString()));
+
+		mockShell.parseAndEvaluate("echo second > " + secondFile.toAbsolutePath(), mockOutput);
+		Files.setLastModifiedTime(tempDir, past);
+		mockOutput.reset();
+		mockShell.parseAndEvaluate(cmdline, mockOutput);
+		assertEquals(firstFile.toString() + " " + secondFile.toString() + System.lineSeparator(),
+				new String(mockOutput.toByteArray(), DEFAULT_ENCODING));
+
+		Files.delete(firstFile);
+		Files.delete(secondFile);
+		Files.delete(tempDir);
+	}
+
+	/**
+	 * Test whether pipe operators inside quotes are not treated as pipes when
+	 * the command line also contains a pipe.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPipeWithQuotedPipe() throws Exception {
+		String cmdline = "echo 'a | b' | cat";
+		mockShell.parseAndEvaluate(cmdline, mockOutput);
+		assertEquals("a | b" + System.lineSeparator(), new String(mockOutput.toByteArray(), DEFAULT_ENCODING));
+	}
+
+	/**
+	 * Test whether a long chain of sequence commands is parsed into a single
+	 * sequence command that runs every part.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testParseLongSequence() throws Exception {
+		StringBuilder cmdline = new StringBuilder("echo 0");
+		StringBuilder expected = new StringBuilder("0" + System.lineSeparator());
+		for (int i = 1; i < 2000; i++) {
+			cmdline.append(" ; echo ").append(i);
+			expected.append(i).append(System.lineSeparator());
+		}
+		Command command = ShellImpl.parse(cmdline.toString());
+		assertTrue(command instanceof SequenceCommand);
+		command.evaluate(null, mockOutput);
+		assertEquals(expected.toString(), new String(mockOutput.toByteArray(), DEFAULT_ENCODING));
+	}
 }
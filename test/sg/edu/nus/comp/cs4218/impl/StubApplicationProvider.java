@@ -0,0 +1,34 @@
+package sg.edu.nus.comp.cs4218.impl;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import sg.edu.nus.comp.cs4218.Application;
+import sg.edu.nus.comp.cs4218.ApplicationProvider;
+
+/**
+ * Provider registered through META-INF/services in the test folder, used to
+ * test that applications are discovered with ServiceLoader.
+ */
+public class StubApplicationProvider implements ApplicationProvider {
+	public static final String NAME = "stubapp";
+	public static final String OUTPUT = "stub output";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public Application getApplication() {
+		return new Application() {
+			@Override
+			public void run(String[] args, InputStream stdin, OutputStream stdout) {
+				PrintStream printStream = new PrintStream(stdout);
+				printStream.print(OUTPUT);
+				printStream.flush();
+			}
+		};
+	}
+}
@@ -12,15 +12,20 @@
 package sg.edu.nus.comp.cs4218.impl.app;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -301,6 +306,33 @@ public class CatApplicationTest {
 		fileDir.delete();
 	}
 
+	/**
+	 * Case 4A: output redirected to a file, the contents are copied through
+	 * the file channel unchanged
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void runCAppToFileOutput4A() throws Exception {
+		File outFile = File.createTempFile("catOutput", ".txt");
+		try {
+			args = new String[] { filePath + TEXT_INPUT2_TXT, filePath + TEXT_INPUT_TXT };
+			try (FileOutputStream fileOut = new FileOutputStream(outFile)) {
+				cApp.run(args, null, fileOut);
+			}
+			byte[] first = Files.readAllBytes(Paths.get(args[0]));
+			byte[] second = Files.readAllBytes(Paths.get(args[1]));
+			byte[] newLine = System.lineSeparator().getBytes("UTF-8");
+			ByteArrayOutputStream expected = new ByteArrayOutputStream();
+			expected.write(first);
+			expected.write(newLine);
+			expected.write(second);
+			assertTrue(Arrays.equals(expected.toByteArray(), Files.readAllBytes(outFile.toPath())));
+		} finally {
+			outFile.delete();
+		}
+	}
+
 	String expectedOutput1() {
 		return "Roses are red," + System.lineSeparator() + "Violets are blue," + System.lineSeparator()
 				+ "All of my base," + System.lineSeparator() + "Are belong to you." + System.lineSeparator()
@@ -1,14 +1,23 @@
 package sg.edu.nus.comp.cs4218.impl.app;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import sg.edu.nus.comp.cs4218.exception.CommException;
+import sg.edu.nus.comp.cs4218.misc.LineHashSet;
 
 public class CommApplicationTest {
 
@@ -162,4 +171,205 @@ public class CommApplicationTest {
 		caTest.run(arg, null, stdout);
 		assertEquals(expected, stdout.toString());
 	}
+
+	/**
+	 * tests that rows are written while the inputs are still being read, using
+	 * a stdin that is generated line by line
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRunStreamsLongStdin() throws Exception {
+		Path emptyFile = Files.createTempFile("comm", ".txt");
+		final int numLines = 200000;
+		InputStream inputStream = new InputStream() {
+			private byte[] line = new byte[0];
+			private int pos;
+			private int lineNum;
+
+			@Override
+			public int read() {
+				if (pos == line.length) {
+					if (lineNum == numLines) {
+						return -1;
+					}
+					line = String.format("line%07d%n", lineNum++).getBytes();
+					pos = 0;
+				}
+				return line[pos++];
+			}
+		};
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		try {
+			caTest.run(new String[] { emptyFile.toString() }, inputStream, stdout);
+		} finally {
+			Files.delete(emptyFile);
+		}
+		String[] rows = stdout.toString().split(NEW_LINE);
+		assertEquals(numLines, rows.length);
+		assertEquals("line0000000" + TAB_LINE + TAB_LINE, rows[0]);
+		assertEquals("line0199999" + TAB_LINE + TAB_LINE, rows[numLines - 1]);
+	}
+
+	/**
+	 * tests that a failing input is reported as a read error rather than as a
+	 * failure to write the output
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRunReportsReadFailure() throws Exception {
+		Path file2 = Files.createTempFile("comm", ".txt");
+		InputStream inputStream = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new IOException("read failed");
+			}
+		};
+		try {
+			caTest.run(new String[] { file2.toString() }, inputStream, new ByteArrayOutputStream());
+			fail("CommException expected");
+		} catch (CommException e) {
+			assertEquals("Comm: Could not read file", e.getMessage());
+		} finally {
+			Files.delete(file2);
+		}
+	}
+
+	/**
+	 * tests that a failing stdout is reported as a failure to write the output
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRunReportsWriteFailure() throws Exception {
+		OutputStream stdout = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("write failed");
+			}
+		};
+		try {
+			caTest.run(args, null, stdout);
+			fail("CommException expected");
+		} catch (CommException e) {
+			assertEquals("Comm: Could not write to output stream", e.getMessage());
+		}
+	}
+
+	/**
+	 * tests that comparing two empty inputs writes nothing
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRunEmptyInputs() throws Exception {
+		Path emptyFile = Files.createTempFile("comm", ".txt");
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		try {
+			caTest.run(new String[] { emptyFile.toString(), emptyFile.toString() }, null, stdout);
+		} finally {
+			Files.delete(emptyFile);
+		}
+		assertEquals("", stdout.toString());
+	}
+
+	/**
+	 * tests that the column methods share one comparison of the files and that
+	 * the comparison is redone once a file changes
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCommResultCachedUntilFileChanges() throws Exception {
+		Path file1 = Files.createTempFile("comm", ".txt");
+		Path file2 = Files.createTempFile("comm", ".txt");
+		try {
+			Files.write(file1, ("apple" + NEW_LINE + "cherry").getBytes());
+			Files.write(file2, ("banana" + NEW_LINE + "cherry").getBytes());
+			String[] tempArgs = new String[] { file1.toString(), file2.toString() };
+			long misses = CommApplication.getResultCache().getMisses();
+			assertEquals("apple" + NEW_LINE + TAB_LINE + NEW_LINE + TAB_LINE, caTest.commOnlyFirst(tempArgs));
+			assertEquals(TAB_LINE + NEW_LINE + "banana" + NEW_LINE + TAB_LINE, caTest.commOnlySecond(tempArgs));
+			assertEquals(TAB_LINE + NEW_LINE + TAB_LINE + NEW_LINE + "cherry", caTest.commAllMatches(tempArgs));
+			caTest.commNoMatches(tempArgs);
+			caTest.commBothMathches(tempArgs);
+			assertEquals(misses + 1, CommApplication.getResultCache().getMisses());
+
+			Files.write(file2, ("apple" + NEW_LINE + "cherry" + NEW_LINE + "date").getBytes());
+			assertEquals(TAB_LINE + TAB_LINE + "apple" + NEW_LINE + TAB_LINE + TAB_LINE + "cherry" + NEW_LINE
+					+ TAB_LINE + "date" + TAB_LINE, caTest.commBothMathches(tempArgs));
+			assertEquals(misses + 2, CommApplication.getResultCache().getMisses());
+		} finally {
+			Files.delete(file1);
+			Files.delete(file2);
+		}
+	}
+
+	/**
+	 * tests the unsorted mode with the smaller file first and duplicate lines,
+	 * which are matched one occurrence at a time
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRunUnsortedSmallerFirst() throws Exception {
+		Path file1 = Files.createTempFile("comm", ".txt");
+		Path file2 = Files.createTempFile("comm", ".txt");
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		try {
+			Files.write(file1, ("pear" + NEW_LINE + "apple" + NEW_LINE + "kiwi" + NEW_LINE + "apple").getBytes());
+			Files.write(file2, ("zucchini" + NEW_LINE + "apple" + NEW_LINE + "banana" + NEW_LINE + "pear" + NEW_LINE
+					+ "banana" + NEW_LINE + "corn").getBytes());
+			caTest.run(new String[] { "-u", file1.toString(), file2.toString() }, null, stdout);
+		} finally {
+			Files.delete(file1);
+			Files.delete(file2);
+		}
+		String expected = TAB_LINE + "zucchini" + TAB_LINE + NEW_LINE + TAB_LINE + TAB_LINE + "apple" + NEW_LINE
+				+ TAB_LINE + "banana" + TAB_LINE + NEW_LINE + TAB_LINE + TAB_LINE + "pear" + NEW_LINE + TAB_LINE
+				+ "banana" + TAB_LINE + NEW_LINE + TAB_LINE + "corn" + TAB_LINE + NEW_LINE + "kiwi" + TAB_LINE
+				+ TAB_LINE + NEW_LINE + "apple" + TAB_LINE + TAB_LINE;
+		assertEquals(expected, stdout.toString());
+	}
+
+	/**
+	 * tests the unsorted mode streaming stdin against a file
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRunUnsortedWithStdin() throws Exception {
+		Path file2 = Files.createTempFile("comm", ".txt");
+		String contentStr = "cherry" + NEW_LINE + "apple" + NEW_LINE + "date";
+		InputStream inputStream = new java.io.ByteArrayInputStream(contentStr.getBytes());
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		try {
+			Files.write(file2, ("date" + NEW_LINE + "banana" + NEW_LINE + "cherry").getBytes());
+			caTest.run(new String[] { "-u", file2.toString() }, inputStream, stdout);
+		} finally {
+			Files.delete(file2);
+		}
+		String expected = TAB_LINE + TAB_LINE + "cherry" + NEW_LINE + "apple" + TAB_LINE + TAB_LINE + NEW_LINE
+				+ TAB_LINE + TAB_LINE + "date" + NEW_LINE + TAB_LINE + "banana" + TAB_LINE;
+		assertEquals(expected, stdout.toString());
+	}
+
+	@Test
+	public void testLineHashSetManyLines() {
+		LineHashSet lineSet = new LineHashSet();
+		int numLines = 100000;
+		for (int i = 0; i < numLines; i++) {
+			lineSet.add("line" + i % (numLines / 2));
+		}
+		for (int i = 0; i < numLines / 2; i += 2) {
+			assertTrue(lineSet.remove("line" + i));
+		}
+		assertFalse(lineSet.remove("line" + numLines));
+		assertEquals(numLines * 3 / 4, lineSet.size());
+		List<String> remaining = lineSet.remainingLines();
+		assertEquals(numLines * 3 / 4, remaining.size());
+		assertEquals("line1", remaining.get(0));
+		assertEquals("line0", remaining.get(numLines / 4));
+	}
 }
@@ -5,7 +5,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.nio.file.Path;
+import java.io.InputStream;
 import java.nio.file.Paths;
 
 import org.junit.After;
@@ -16,8 +16,8 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
-import sg.edu.nus.comp.cs4218.Environment;
 import sg.edu.nus.comp.cs4218.exception.FmtException;
+import sg.edu.nus.comp.cs4218.misc.WordWrapper;
 
 public class FmtApplicationTest {
 	private static FmtApplication fmtApplication;
@@ -71,7 +71,8 @@ public class FmtApplicationTest {
 	 */
 	@Test
 	public void testReadFromStdin() throws FmtException {
-		assertEquals(fmtApplication.readFromStdin(bis), "This is a test string");
+		fmtApplication.run(new String[0], bis, baos);
+		assertEquals("This is a test string" + NEW_LINE, new String(baos.toByteArray()));
 	}
 
 	/**
@@ -83,7 +84,7 @@ public class FmtApplicationTest {
 	public void testReadFromStdinNull() throws FmtException {
 		exception.expect(FmtException.class);
 		exception.expectMessage("Null pointer exception - stdin is not defined");
-		assertEquals(fmtApplication.readFromStdin(null), "This is a test string");
+		fmtApplication.run(new String[0], null, baos);
 	}
 
 	/**
@@ -229,11 +230,91 @@ public class FmtApplicationTest {
 	 */
 	@Test
 	public void testReadFromFile() throws FmtException {
-		Path currentDir = Paths.get(Environment.currentDirectory);
-		Path filePath = currentDir.resolve("examples/testRead.txt");
-		String readString = fmtApplication.readFromFile(filePath);
-		String expectedString = "Selon la prefecture, des engins explosifs avaient ete";
-		assertEquals(expectedString, readString);
+		fmtApplication.run(new String[] { "examples/testRead.txt" }, null, baos);
+		String expectedString = "Selon la prefecture, des engins explosifs avaient ete" + NEW_LINE;
+		assertEquals(expectedString, new String(baos.toByteArray()));
+	}
+
+	@Test
+	public void testRunLongStdin() throws FmtException {
+		final int numWords = 300000;
+		InputStream inputStream = new InputStream() {
+			private byte[] word = new byte[0];
+			private int pos;
+			private int wordNum;
+
+			@Override
+			public int read() {
+				if (pos == word.length) {
+					if (wordNum == numWords) {
+						return -1;
+					}
+					word = ("word" + wordNum % 100 + (wordNum % 7 == 0 ? "\r\n" : " ")).getBytes();
+					wordNum++;
+					pos = 0;
+				}
+				return word[pos++];
+			}
+		};
+		String[] arguments = { "-w", "30" };
+		fmtApplication.run(arguments, inputStream, baos);
+		String[] lines = new String(baos.toByteArray()).split(NEW_LINE);
+		int wordCount = 0;
+		for (String line : lines) {
+			assertTrue(line.length() < 30);
+			wordCount += line.split(" ").length;
+		}
+		assertEquals(numWords, wordCount);
+		assertEquals("word0 word1 word2 word3 word4", lines[0]);
+	}
+
+	@Test
+	public void testRunIgnoresTrailingBlankWords() throws FmtException {
+		bis = new ByteArrayInputStream(" \tThe random\r\n\r\nstring \t\n".getBytes());
+		String[] arguments = { "-w", "20" };
+		fmtApplication.run(arguments, bis, baos);
+		assertEquals("The random string" + NEW_LINE, new String(baos.toByteArray()));
+	}
+
+	@Test
+	public void testRunOptimalBalancesLines() throws FmtException {
+		bis = new ByteArrayInputStream("aaa bb cc ddddd".getBytes());
+		String[] arguments = { "-o", "-w", "7" };
+		fmtApplication.run(arguments, bis, baos);
+		assertEquals("aaa" + NEW_LINE + "bb cc" + NEW_LINE + "ddddd" + NEW_LINE, new String(baos.toByteArray()));
+
+		baos.reset();
+		bis = new ByteArrayInputStream("aaa bb cc ddddd".getBytes());
+		fmtApplication.run(new String[] { "-w", "7" }, bis, baos);
+		assertEquals("aaa bb" + NEW_LINE + "cc" + NEW_LINE + "ddddd" + NEW_LINE, new String(baos.toByteArray()));
+	}
+
+	@Test
+	public void testRunOptimalWithLongWord() throws FmtException {
+		bis = new ByteArrayInputStream("aaa bb cc ddddd longerword x".getBytes());
+		String[] arguments = { "-w", "7", "-o" };
+		fmtApplication.run(arguments, bis, baos);
+		assertEquals("aaa" + NEW_LINE + "bb cc" + NEW_LINE + "ddddd" + NEW_LINE + "longerword" + NEW_LINE + "x"
+				+ NEW_LINE, new String(baos.toByteArray()));
+	}
+
+	@Test
+	public void testRunOptimalLongInput() throws FmtException {
+		StringBuilder input = new StringBuilder();
+		int numWords = WordWrapper.WINDOW_WORDS * 3 + 17;
+		for (int i = 0; i < numWords; i++) {
+			input.append("w").append(i % 13 == 0 ? "ordy" : "").append(i % 10).append(' ');
+		}
+		bis = new ByteArrayInputStream(input.toString().getBytes());
+		String[] arguments = { "-o", "-w", "25" };
+		fmtApplication.run(arguments, bis, baos);
+		String[] lines = new String(baos.toByteArray()).split(NEW_LINE);
+		StringBuilder rejoined = new StringBuilder();
+		for (String line : lines) {
+			assertTrue(line.length() < 25);
+			rejoined.append(line).append(' ');
+		}
+		assertEquals(input.toString(), rejoined.toString());
 	}
 
 	@After
@@ -13,15 +13,21 @@ package sg.edu.nus.comp.cs4218.impl.app;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -30,6 +36,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import sg.edu.nus.comp.cs4218.exception.HeadException;
+import sg.edu.nus.comp.cs4218.misc.MultiFilePrinter;
 
 public class HeadApplicationTest {
 
@@ -752,6 +759,176 @@ public class HeadApplicationTest {
 
 	}
 
+	// Case 5: byte count from arg, filename from arg
+	// Expected output: first 20 bytes of the file, terminators untouched
+	@Test
+	public void testrunBytesFromFile() throws HeadException {
+		args = new String[] { "-c", "20", "examples/" + TEXTINPUT_TXT };
+		output = new ByteArrayOutputStream();
+		hApp.run(args, null, output);
+		assertEquals(20, ((ByteArrayOutputStream) output).size());
+		assertEquals("Roses are red,", output.toString().substring(0, 14));
+	}
+
+	// Case 5B: byte count from arg, input from stdin, stdin is not read past
+	// the bytes printed
+	@Test
+	public void testrunBytesFromStdin() throws HeadException, IOException {
+		args = new String[] { "-c", "5" };
+		input = new ByteArrayInputStream("abc\r\ndefgh".getBytes());
+		output = new ByteArrayOutputStream();
+		hApp.run(args, input, output);
+		assertEquals("abc\r\n", output.toString());
+		assertEquals('d', input.read());
+	}
+
+	// Case 5C: negative byte count
+	@Test(expected = HeadException.class)
+	public void testrunBytesNegative() throws HeadException {
+		args = new String[] { "-c", "-5" };
+		hApp.run(args, new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream());
+	}
+
+	// Case 6: lines spanning many read buffers with mixed terminators
+	@Test
+	public void testrunLongStdinMixedTerminators() throws HeadException {
+		StringBuilder content = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		String[] terminators = { "\n", "\r\n", "\r" };
+		for (int i = 0; i < 30000; i++) {
+			content.append("line ").append(i).append(terminators[i % 3]);
+			if (i < 20000) {
+				expected.append("line ").append(i).append(System.lineSeparator());
+			}
+		}
+		args = new String[] { "-n", "20000" };
+		output = new ByteArrayOutputStream();
+		hApp.run(args, new ByteArrayInputStream(content.toString().getBytes()), output);
+		assertEquals(expected.toString(), output.toString());
+	}
+
+	// Case 7: several files, each printed under a header in argument order
+	@Test
+	public void testrunMultipleFiles() throws HeadException {
+		args = new String[] { "-n", "2", "examples/" + TEXTINPUT_TXT, "examples/" + TEXTINPUT2_TXT };
+		output = new ByteArrayOutputStream();
+		hApp.run(args, null, output);
+		String newLine = System.lineSeparator();
+		assertEquals("==> examples/" + TEXTINPUT_TXT + " <==" + newLine + "Roses are red," + newLine
+				+ "Violets are blue," + newLine + newLine + "==> examples/" + TEXTINPUT2_TXT + " <==" + newLine
+				+ "1 Roses are red," + newLine + "2 Violets are blue," + newLine, output.toString());
+	}
+
+	// Case 7B: more files than are read ahead at once
+	@Test
+	public void testrunManyFiles() throws HeadException, IOException {
+		int numFiles = MultiFilePrinter.MAX_PREFETCH * 2 + 3;
+		List<Path> files = new ArrayList<Path>();
+		StringBuilder expected = new StringBuilder();
+		String newLine = System.lineSeparator();
+		try {
+			for (int i = 0; i < numFiles; i++) {
+				Path file = Files.createTempFile("headTest", ".txt");
+				files.add(file);
+				Files.write(file, ("first " + i + "\nsecond " + i + "\n").getBytes());
+				if (i > 0) {
+					expected.append(newLine);
+				}
+				expected.append("==> ").append(file).append(" <==").append(newLine);
+				expected.append("first ").append(i).append(newLine);
+			}
+			args = new String[numFiles + 2];
+			args[0] = "-n";
+			args[1] = "1";
+			for (int i = 0; i < numFiles; i++) {
+				args[i + 2] = files.get(i).toString();
+			}
+			output = new ByteArrayOutputStream();
+			hApp.run(args, null, output);
+		} finally {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		assertEquals(expected.toString(), output.toString());
+	}
+
+	// Case 7E: parts larger than the read-ahead budget are streamed in order
+	@Test
+	public void testrunMultipleFilesOverBufferBudget() throws Exception {
+		final int numFiles = 20;
+		final int chunks = 50;
+		final byte[] chunk = new byte[100];
+		List<String> names = new ArrayList<String>();
+		List<Path> paths = new ArrayList<Path>();
+		StringBuilder expected = new StringBuilder();
+		String newLine = System.lineSeparator();
+		for (int i = 0; i < numFiles; i++) {
+			names.add("part" + i);
+			paths.add(Paths.get(String.valueOf((char) ('a' + i))));
+			if (i > 0) {
+				expected.append(newLine);
+			}
+			expected.append("==> part").append(i).append(" <==").append(newLine);
+			for (int j = 0; j < chunks * chunk.length; j++) {
+				expected.append((char) ('a' + i));
+			}
+		}
+		MultiFilePrinter printer = new MultiFilePrinter(new MultiFilePrinter.PartReader() {
+			@Override
+			public void readPart(Path filePath, OutputStream out) throws IOException {
+				byte[] bytes = chunk.clone();
+				Arrays.fill(bytes, (byte) filePath.toString().charAt(0));
+				for (int j = 0; j < chunks; j++) {
+					out.write(bytes);
+				}
+			}
+		}, 256);
+		output = new ByteArrayOutputStream();
+		printer.print(names, paths, output);
+		assertEquals(expected.toString(), output.toString());
+	}
+
+	// Case 7C: one of several files is missing
+	@Test
+	public void testrunMultipleFilesOneMissing() {
+		args = new String[] { "examples/" + TEXTINPUT_TXT, "examples/non.txt" };
+		try {
+			hApp.run(args, null, new ByteArrayOutputStream());
+			fail("Expected HeadException");
+		} catch (HeadException e) {
+			assertTrue(e.getMessage().contains("Could not read file"));
+		}
+	}
+
+	// Case 7D: several files without -n print the first 10 lines of each
+	@Test
+	public void testrunMultipleFilesDefaultLines() throws HeadException, IOException {
+		Path first = Files.createTempFile("headTest", ".txt");
+		Path second = Files.createTempFile("headTest", ".txt");
+		StringBuilder content = new StringBuilder();
+		StringBuilder lines = new StringBuilder();
+		String newLine = System.lineSeparator();
+		for (int i = 0; i < 12; i++) {
+			content.append("line ").append(i).append('\n');
+			if (i < 10) {
+				lines.append("line ").append(i).append(newLine);
+			}
+		}
+		try {
+			Files.write(first, content.toString().getBytes());
+			Files.write(second, content.toString().getBytes());
+			args = new String[] { first.toString(), second.toString() };
+			output = new ByteArrayOutputStream();
+			hApp.run(args, null, output);
+		} finally {
+			Files.delete(first);
+			Files.delete(second);
+		}
+		assertEquals("==> " + first + " <==" + newLine + lines + newLine + "==> " + second + " <==" + newLine + lines,
+				output.toString());
+	}
+
 	String expectedOutput1() {
 		return "Roses are red," + System.lineSeparator() + "Violets are blue," + System.lineSeparator()
 				+ "All of my base," + System.lineSeparator() + "Are belong to you." + System.lineSeparator()
@@ -1,15 +1,27 @@
 package sg.edu.nus.comp.cs4218.impl.app;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import sg.edu.nus.comp.cs4218.exception.SortException;
+import sg.edu.nus.comp.cs4218.misc.LineClassIndex;
+import sg.edu.nus.comp.cs4218.misc.MergeSort;
+import sg.edu.nus.comp.cs4218.misc.RadixSort;
+import sg.edu.nus.comp.cs4218.misc.SortHelper;
 
 public class SortApplicationTest {
 	private static final String NEW_LINE = System.lineSeparator();
@@ -465,6 +477,219 @@ public class SortApplicationTest {
 		sortApplication.run(argsArr, null, stdout);
 	}
 
+	/**
+	 * Test if spilling to many run files gives the same result as sorting in
+	 * memory, and if the run files are removed afterwards
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRunExternalSortMatchesInMemory() throws Exception {
+		Path tempDir = Files.createTempDirectory("sortRuns");
+		File input = File.createTempFile("sortInput", ".txt");
+		try {
+			Random random = new Random(4218);
+			StringBuilder content = new StringBuilder();
+			for (int i = 0; i < 500; i++) {
+				content.append(random.nextInt(50)).append(" Line").append((char) ('a' + random.nextInt(26)))
+						.append(NEW_LINE);
+			}
+			Files.write(input.toPath(), content.toString().getBytes());
+
+			assertEquals(runSort(input.getPath()),
+					runSort("-S", "1b", "-T", tempDir.toString(), input.getPath()));
+			assertEquals(runSort("-n", input.getPath()),
+					runSort("-n", "-S", "1b", "-T", tempDir.toString(), input.getPath()));
+			assertEquals(0, tempDir.toFile().list().length);
+		} finally {
+			input.delete();
+			Files.deleteIfExists(tempDir);
+		}
+	}
+
+	/**
+	 * Test if the run files spilled so far are removed when reading the input
+	 * fails part way
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRunExternalSortFailingInputRemovesRuns() throws Exception {
+		Path tempDir = Files.createTempDirectory("sortRuns");
+		InputStream failingStdin = new InputStream() {
+			private static final int FAIL_AFTER = 200 * 1024;
+			private int count;
+
+			@Override
+			public int read() throws IOException {
+				if (count >= FAIL_AFTER) {
+					throw new IOException("Read failed");
+				}
+				count++;
+				return count % 16 == 0 ? '\n' : 'a' + count % 13;
+			}
+		};
+		try {
+			sortApplication.run(new String[] { "-S", "8K", "-T", tempDir.toString() }, failingStdin,
+					new ByteArrayOutputStream());
+			fail("Expected SortException");
+		} catch (SortException e) {
+			assertEquals(0, tempDir.toFile().list().length);
+		} finally {
+			Files.deleteIfExists(tempDir);
+		}
+	}
+
+	/**
+	 * Test with a memory budget that is not a size
+	 * 
+	 * @throws SortException
+	 */
+	@Test(expected = SortException.class)
+	public void testRunInvalidBufferSize() throws SortException {
+		String[] argsArr = new String[] { "-S", "12Q", "examples/sort.txt" };
+		sortApplication.run(argsArr, null, new ByteArrayOutputStream());
+	}
+
+	/**
+	 * Test if a parallel sort large enough to be split into tasks gives the
+	 * same result as a sequential sort
+	 * 
+	 * @throws SortException
+	 */
+	@Test
+	public void testParallelMergeSortMatchesSequential() throws SortException {
+		Random random = new Random(4218);
+		String[] lines = new String[100000];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = random.nextInt(1000) + (random.nextBoolean() ? " Ab" : " aB") + random.nextInt(10);
+		}
+		for (boolean numFlag : new boolean[] { false, true }) {
+			String[] sequential = new MergeSort(numFlag).mergeSort(lines.clone(), 0, lines.length - 1);
+			String[] parallel = new MergeSort(numFlag, true).mergeSort(lines.clone(), 0, lines.length - 1);
+			assertTrue(Arrays.equals(sequential, parallel));
+			for (int i = 1; i < parallel.length; i++) {
+				assertTrue(new MergeSort(numFlag).compare(parallel[i - 1], parallel[i]) <= 0);
+			}
+		}
+	}
+
+	/**
+	 * Test numbers too long for a long and numbers with leading zeros with num
+	 * flag on
+	 * 
+	 * @throws SortException
+	 */
+	@Test
+	public void testSortNumbersBeyondLongWithNumFlagOn() throws SortException {
+		String[] inputArr = new String[] { "100000000000000000000", "99", "0099", "9", "99999999999999999999",
+				"99" };
+		List<String> arrayList = sortApplication.sortNumbersWithNumFlagOn(inputArr);
+		assertEquals(Arrays.asList("9", "99", "0099", "99", "99999999999999999999", "100000000000000000000"),
+				arrayList);
+	}
+
+	/**
+	 * Test if collation keys compare in the same order as the lines they were
+	 * made from
+	 */
+	@Test
+	public void testCollationKeyOrderMatchesCustomCompare() {
+		String[] lines = new String[] { "", "a", "ab", "aB", "A", "Ab", "1", "10", "#", "#a", "\u00e9", "~", "z9",
+				"Z", "9" };
+		for (String line1 : lines) {
+			for (String line2 : lines) {
+				int expected = Integer.signum(MergeSort.customCompare(line1, line2));
+				int actual = Integer.signum(MergeSort.compareCollationKeys(MergeSort.collationKey(line1),
+						MergeSort.collationKey(line2)));
+				assertEquals(line1 + " vs " + line2, expected, actual);
+			}
+		}
+		assertTrue(MergeSort.customCompare("#", "1") < 0);
+		assertTrue(MergeSort.customCompare("1", "A") < 0);
+		assertTrue(MergeSort.customCompare("A", "a") < 0);
+		assertTrue(MergeSort.customCompare("\u00e9", "1") < 0);
+	}
+
+	/**
+	 * Test if radix sort gives the same order as merge sort, including ties,
+	 * shared prefixes and characters outside ASCII
+	 * 
+	 * @throws SortException
+	 */
+	@Test
+	public void testRadixSortMatchesMergeSort() throws SortException {
+		Random random = new Random(4218);
+		String alphabet = "aAzZ09#~ \u00e9\u4e2d";
+		String[] lines = new String[5000];
+		for (int i = 0; i < lines.length; i++) {
+			StringBuilder line = new StringBuilder(i % 3 == 0 ? "common prefix " : "");
+			int length = random.nextInt(8);
+			for (int j = 0; j < length; j++) {
+				line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			lines[i] = line.toString();
+		}
+		String[] merged = new MergeSort(false).mergeSort(lines.clone(), 0, lines.length - 1);
+		String[] radixSorted = RadixSort.sort(lines.clone(), 0, lines.length - 1);
+		assertTrue(Arrays.equals(merged, radixSorted));
+	}
+
+	/**
+	 * Test selecting radix sort from the command line
+	 * 
+	 * @throws SortException
+	 */
+	@Test
+	public void testRunRadixAlgorithm() throws SortException {
+		assertEquals(runSort("examples/sort2.txt"), runSort("-A", "radix", "examples/sort2.txt"));
+		assertEquals(runSort("-n", "examples/numbersort.txt"), runSort("-A", "radix", "-n", "examples/numbersort.txt"));
+	}
+
+	/**
+	 * Test with an unknown sort algorithm
+	 * 
+	 * @throws SortException
+	 */
+	@Test(expected = SortException.class)
+	public void testRunInvalidAlgorithm() throws SortException {
+		runSort("-A", "bogo", "examples/sort.txt");
+	}
+
+	/**
+	 * Test if changing the lines between queries of different combinations is
+	 * picked up rather than answered from the previous classification
+	 * 
+	 * @throws SortException
+	 */
+	@Test
+	public void testSortCombinationsOfChangedInput() throws SortException {
+		String[] inputArr = new String[] { "abc", "AB", "a1", "\u01c5x", "" };
+		assertEquals(Arrays.asList("", "AB", "abc"), sortApplication.sortStringsSimple(inputArr));
+		assertEquals(Arrays.asList("a1"), sortApplication.sortSimpleNumbers(inputArr));
+		inputArr[2] = "b2";
+		assertEquals(Arrays.asList("b2"), sortApplication.sortSimpleNumbers(inputArr));
+	}
+
+	/**
+	 * Test if an index built once answers every combination type the same
+	 * way as classifying the lines for each query
+	 */
+	@Test
+	public void testSortCombinationsFromSharedIndex() {
+		String[] inputArr = new String[] { "abc", "AB", "a1", "aB1", "aB1#", "#", "" };
+		LineClassIndex index = LineClassIndex.of(inputArr);
+		for (int type = 1; type <= 4; type++) {
+			assertEquals(SortHelper.separateBasedOnType(type, inputArr), SortHelper.separateBasedOnType(type, index));
+		}
+	}
+
+	private String runSort(String... argsArr) throws SortException {
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		sortApplication.run(argsArr, null, stdout);
+		return stdout.toString();
+	}
+
 	/**
 	 * Test sort to check if the order is as given
 	 * Special->Digit->Capital->Lower
@@ -4,11 +4,16 @@
 package sg.edu.nus.comp.cs4218.impl.app;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.LinkedList;
-import java.util.Stack;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -19,6 +24,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import sg.edu.nus.comp.cs4218.exception.TailException;
+import sg.edu.nus.comp.cs4218.misc.LineRingBuffer;
 
 public class TailApplicationTest {
 	private static TailApplication tailApplication;
@@ -67,14 +73,12 @@ public class TailApplicationTest {
 	@Test
 	public final void testLessThanNLines() throws TailException {
 		int numLines = 3;
-		Stack<String> textToExtractFrom = new Stack<String>();
-		textToExtractFrom.push("This is the first line.");
-		textToExtractFrom.push("This is the second line.");
-		LinkedList<String> result = tailApplication.extractTail(textToExtractFrom, numLines);
+		bis = new ByteArrayInputStream("This is the first line.\nThis is the second line.\n".getBytes());
+		LineRingBuffer result = tailApplication.readFromStdin(bis, numLines);
 
 		assertEquals(result.size(), 2);
-		assertEquals(result.get(0), "This is the first line.");
-		assertEquals(result.get(1), "This is the second line.");
+		assertEquals("This is the first line.", new String(result.get(0)));
+		assertEquals("This is the second line.", new String(result.get(1)));
 	}
 
 	/**
@@ -257,6 +261,214 @@ public class TailApplicationTest {
 				resultLines[resultLines.length - 1]);
 	}
 
+	/**
+	 * Test if only the last lines are returned when the file spans many of
+	 * the blocks scanned backwards from the end
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testReadFromLargeFile() throws Exception {
+		StringBuilder content = new StringBuilder();
+		for (int i = 1; i <= 5000; i++) {
+			content.append("line ").append(i).append('\n');
+		}
+		File file = createTempFile(content.toString());
+		try {
+			LinkedList<String> result = tailApplication.readFromFile(file.toPath(), 3);
+			assertEquals(3, result.size());
+			assertEquals("line 4998", result.get(0));
+			assertEquals("line 4999", result.get(1));
+			assertEquals("line 5000", result.get(2));
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Test if CR, LF and CRLF terminators are all recognised and a missing
+	 * terminator on the last line is handled
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testReadFromFileMixedTerminators() throws Exception {
+		File file = createTempFile("first\r\nsecond\rthird\n\nfifth");
+		try {
+			LinkedList<String> result = tailApplication.readFromFile(file.toPath(), 4);
+			assertEquals(4, result.size());
+			assertEquals("second", result.get(0));
+			assertEquals("third", result.get(1));
+			assertEquals("", result.get(2));
+			assertEquals("fifth", result.get(3));
+			assertEquals(5, tailApplication.readFromFile(file.toPath(), 10).size());
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Test if only the last lines of a long stdin stream are kept, including
+	 * a CRLF terminator split across reads and an unterminated last line
+	 *
+	 * @throws TailException
+	 */
+	@Test
+	public void testReadFromLongStdin() throws TailException {
+		StringBuilder content = new StringBuilder();
+		for (int i = 1; i <= 20000; i++) {
+			content.append("line ").append(i).append(i % 2 == 0 ? "\r\n" : "\n");
+		}
+		content.append("last");
+		bis = new ByteArrayInputStream(content.toString().getBytes());
+		String[] arguments = { "-n", "3" };
+		tailApplication.run(arguments, bis, baos);
+		assertEquals("line 19999" + NEW_LINE + "line 20000" + NEW_LINE + "last" + NEW_LINE,
+				new String(baos.toByteArray()));
+	}
+
+	/**
+	 * Test if empty lines and lone carriage returns from stdin are kept as
+	 * lines
+	 *
+	 * @throws TailException
+	 */
+	@Test
+	public void testReadFromStdinEmptyLines() throws TailException {
+		bis = new ByteArrayInputStream("a\r\rb\n\n".getBytes());
+		LineRingBuffer result = tailApplication.readFromStdin(bis, 3);
+		assertEquals(3, result.size());
+		assertEquals("", new String(result.get(0)));
+		assertEquals("b", new String(result.get(1)));
+		assertEquals("", new String(result.get(2)));
+	}
+
+	/**
+	 * Test if data appended to a followed file is printed, and if following
+	 * stops when the thread is interrupted
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFollowAppendedData() throws Exception {
+		File file = createTempFile("first\nsecond\n");
+		try {
+			Thread follower = startFollowing(new String[] { "-n", "1", "-f", file.getAbsolutePath() });
+			assertTrue(awaitOutput("second\n"));
+			Files.write(file.toPath(), "third\n".getBytes(), StandardOpenOption.APPEND);
+			assertTrue(awaitOutput("second\nthird\n"));
+
+			follower.interrupt();
+			follower.join(5000);
+			assertFalse(follower.isAlive());
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Test if a partial last line is completed by the data appended to it and
+	 * the line terminators of the file are kept
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFollowPartialLastLine() throws Exception {
+		File file = createTempFile("first\r\nsecond\r\nthi");
+		try {
+			Thread follower = startFollowing(new String[] { "-n", "2", "-f", file.getAbsolutePath() });
+			assertTrue(awaitOutput("second\r\nthi"));
+			Files.write(file.toPath(), "rd\n".getBytes(), StandardOpenOption.APPEND);
+			assertTrue(awaitOutput("second\r\nthird\n"));
+
+			follower.interrupt();
+			follower.join(5000);
+			assertFalse(follower.isAlive());
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Test if -F switches to the new file once the followed file is replaced
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFollowNameAcrossRotation() throws Exception {
+		File file = createTempFile("old\n");
+		File rotated = new File(file.getPath() + ".1");
+		try {
+			Thread follower = startFollowing(new String[] { "-F", file.getAbsolutePath() });
+			assertTrue(awaitOutput("old\n"));
+			Files.move(file.toPath(), rotated.toPath());
+			Files.write(file.toPath(), "new\n".getBytes());
+			assertTrue(awaitOutput("old\nnew\n"));
+
+			follower.interrupt();
+			follower.join(5000);
+			assertFalse(follower.isAlive());
+		} finally {
+			file.delete();
+			rotated.delete();
+		}
+	}
+
+	@Test
+	public void testMultipleFilesWithHeaders() throws TailException, IOException {
+		File file1 = createTempFile("a1\na2\na3\n");
+		File file2 = createTempFile("b1\r\nb2");
+		String newLine = System.lineSeparator();
+		try {
+			String[] arguments = { "-n", "2", file1.getPath(), file2.getPath() };
+			tailApplication.run(arguments, null, baos);
+		} finally {
+			file1.delete();
+			file2.delete();
+		}
+		assertEquals("==> " + file1.getPath() + " <==" + newLine + "a2" + newLine + "a3" + newLine + newLine + "==> "
+				+ file2.getPath() + " <==" + newLine + "b1" + newLine + "b2" + newLine, baos.toString());
+	}
+
+	@Test
+	public void testMultipleFilesCannotBeFollowed() throws TailException {
+		exception.expect(TailException.class);
+		exception.expectMessage("Only one file can be followed");
+
+		String[] arguments = { "-f", fileToRead, fileToReadEmpty };
+		tailApplication.run(arguments, null, baos);
+	}
+
+	private Thread startFollowing(final String[] arguments) {
+		final ByteArrayOutputStream output = baos;
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					tailApplication.run(arguments, null, output);
+				} catch (TailException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	private boolean awaitOutput(String expected) throws InterruptedException {
+		for (int i = 0; i < 100 && !expected.equals(baos.toString()); i++) {
+			Thread.sleep(50);
+		}
+		return expected.equals(baos.toString());
+	}
+
+	private File createTempFile(String content) throws IOException {
+		File file = File.createTempFile("tailTest", ".txt");
+		Files.write(file.toPath(), content.getBytes());
+		return file;
+	}
+
 	@After
 	public void tearDown() throws Exception {
 		baos = null;
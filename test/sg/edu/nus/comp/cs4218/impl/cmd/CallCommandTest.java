@@ -10,6 +10,8 @@ import java.util.Vector;
 import org.junit.Before;
 import org.junit.Test;
 
+import sg.edu.nus.comp.cs4218.exception.ShellException;
+
 public class CallCommandTest {
 	private static final String TEMPLATE_ARGS = " %s ";
 	private Vector<String> testVector;
@@ -165,6 +167,33 @@ public class CallCommandTest {
 		assertTrue(testVector.get(2).equals(expectedArgTwo));
 	}
 
+	/**
+	 * Test whether a long command line is split into all of its arguments.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testExtractArgsLongCommand() throws Exception {
+		StringBuilder cmdline = new StringBuilder("echo");
+		int numArgs = 5000;
+		for (int i = 0; i < numArgs; i++) {
+			cmdline.append(i % 2 == 0 ? " arg" + i : " 'quoted " + i + "'");
+		}
+		stubCommand.extractArgs(String.format(TEMPLATE_ARGS, cmdline), testVector);
+		assertEquals(numArgs + 1, testVector.size());
+		assertEquals("quoted " + (numArgs - 1), testVector.get(numArgs));
+	}
+
+	/**
+	 * Test whether arguments that are not separated by whitespace are rejected.
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = ShellException.class)
+	public void testExtractArgsMissingWhitespace() throws Exception {
+		stubCommand.extractArgs(String.format(TEMPLATE_ARGS, "echo abc'def'"), testVector);
+	}
+
 	/**
 	 * Test whether the input redirection can be parsed from the given command
 	 * (function wise) line.
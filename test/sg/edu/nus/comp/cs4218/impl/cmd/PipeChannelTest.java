@@ -0,0 +1,99 @@
+package sg.edu.nus.comp.cs4218.impl.cmd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PipeChannelTest {
+	private static final int CAPACITY = 16;
+	private PipeChannel channel;
+
+	@Before
+	public void setUp() {
+		channel = new PipeChannel(CAPACITY);
+	}
+
+	/**
+	 * Test that data larger than the channel capacity passes through intact
+	 * when the writer and reader run on different threads.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testTransferLargerThanCapacity() throws Exception {
+		final byte[] data = new byte[CAPACITY * 100 + 7];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					OutputStream output = channel.getOutputStream();
+					output.write(data, 0, 5);
+					output.write(data[5]);
+					output.write(data, 6, data.length - 6);
+					output.close();
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		writer.start();
+
+		ByteArrayOutputStream received = new ByteArrayOutputStream();
+		InputStream input = channel.getInputStream();
+		byte[] chunk = new byte[5];
+		int numRead;
+		while ((numRead = input.read(chunk)) != -1) {
+			received.write(chunk, 0, numRead);
+		}
+		writer.join();
+		assertArrayEquals(data, received.toByteArray());
+	}
+
+	/**
+	 * Test that buffered data is still readable after the writer closes, and
+	 * that the reader then sees end of stream.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testReadAfterWriterClosed() throws Exception {
+		channel.getOutputStream().write('a');
+		channel.closeWriter();
+		assertEquals('a', channel.getInputStream().read());
+		assertEquals(-1, channel.getInputStream().read());
+	}
+
+	/**
+	 * Test that reading from a closed read end fails.
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = IOException.class)
+	public void testReadAfterReaderClosed() throws Exception {
+		channel.getOutputStream().write('a');
+		channel.getInputStream().close();
+		channel.getInputStream().read();
+	}
+
+	/**
+	 * Test that writing after the reader has gone away fails like a broken
+	 * pipe instead of discarding the data silently.
+	 *
+	 * @throws Exception
+	 */
+	@Test(expected = IOException.class)
+	public void testWriteAfterReaderClosed() throws Exception {
+		channel.getInputStream().close();
+		channel.getOutputStream().write('a');
+	}
+}
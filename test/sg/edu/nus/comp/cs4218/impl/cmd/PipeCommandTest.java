@@ -3,6 +3,10 @@ package sg.edu.nus.comp.cs4218.impl.cmd;
 import static org.junit.Assert.assertEquals;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -143,4 +147,85 @@ public class PipeCommandTest {
 		ShellImpl shell = new ShellImpl();
 		shell.parseAndEvaluate(temp, stdout);
 	}
+
+	/**
+	 * Tests that a pipe carrying more data than the capacity of a single pipe
+	 * channel streams all of it through to the last command.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPipeLargerThanChannelCapacity() throws Exception {
+		File tempFile = File.createTempFile("pipe", ".txt");
+		tempFile.deleteOnExit();
+		int numLines = PipeChannel.DEFAULT_CAPACITY / 4;
+		writeNumberedLines(tempFile, numLines);
+
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		ShellImpl shell = new ShellImpl();
+		shell.parseAndEvaluate("cat " + tempFile.getAbsolutePath() + " | cat | tail -n 2", stdout);
+		assertEquals((numLines - 2) + NEW_LINE + (numLines - 1) + NEW_LINE, stdout.toString());
+	}
+
+	/**
+	 * Test that the upstream command stops once the downstream command has
+	 * finished, and that the resulting broken pipe is not reported as an
+	 * error.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPipeDownstreamFinishesEarly() throws Exception {
+		File tempFile = File.createTempFile("pipe", ".txt");
+		tempFile.deleteOnExit();
+		writeNumberedLines(tempFile, PipeChannel.DEFAULT_CAPACITY);
+
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		ShellImpl shell = new ShellImpl();
+		shell.parseAndEvaluate("cat " + tempFile.getAbsolutePath() + " | cat | head -n 1", stdout);
+		assertEquals("0" + NEW_LINE, stdout.toString());
+	}
+
+	/**
+	 * Test that terminating a pipe blocked on input makes the evaluation
+	 * return.
+	 *
+	 * @throws Exception
+	 */
+	@Test(timeout = 5000)
+	public void testTerminateBlockedPipe() throws Exception {
+		final PipeCommand pipeCommand = new PipeCommand("cat | cat");
+		pipeCommand.parse();
+		final PipeChannel stdin = new PipeChannel();
+		final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		Thread evaluator = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					pipeCommand.evaluate(stdin.getInputStream(), stdout);
+				} catch (AbstractApplicationException | ShellException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		evaluator.start();
+		stdin.getOutputStream().write('a');
+		while (stdout.size() == 0) {
+			Thread.sleep(10);
+		}
+
+		pipeCommand.terminate();
+		evaluator.join();
+	}
+
+	private void writeNumberedLines(File file, int numLines) throws IOException {
+		OutputStream output = new FileOutputStream(file);
+		try {
+			for (int i = 0; i < numLines; i++) {
+				output.write((i + NEW_LINE).getBytes("UTF-8"));
+			}
+		} finally {
+			output.close();
+		}
+	}
 }